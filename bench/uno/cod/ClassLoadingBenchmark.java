@@ -0,0 +1,75 @@
+package uno.cod;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uno.cod.synthetic.SyntheticSolution;
+
+/**
+ * Cost of {@link CodunoClassLoader#loadClass(String)} for a class of a
+ * player's jar file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassLoadingBenchmark {
+	private static final String NAME = SyntheticSolution.class.getName();
+
+	private Fixture fixture;
+
+	private URL jar;
+
+	private CodunoClassLoader loader;
+
+	@Setup
+	public void setUp() throws IOException, ClassNotFoundException {
+		fixture = new Fixture();
+		jar = fixture.getPlayerURL(1);
+		loader = new CodunoClassLoader(jar, getClass().getClassLoader());
+		loader.loadClass(NAME);
+	}
+
+	@TearDown
+	public void tearDown() {
+		fixture.delete();
+	}
+
+	/**
+	 * A new loader that reads the class from the jar file and defines it.
+	 */
+	@Benchmark
+	public Class<?> cold() throws ClassNotFoundException {
+		ClassCache.clear();
+		return new CodunoClassLoader(jar, getClass().getClassLoader()).loadClass(NAME);
+	}
+
+	/**
+	 * A new loader that defines the class from {@link ClassCache}.
+	 */
+	@Benchmark
+	public Class<?> cached() throws ClassNotFoundException {
+		return new CodunoClassLoader(jar, getClass().getClassLoader()).loadClass(NAME);
+	}
+
+	/**
+	 * A loader that defined the class before.
+	 */
+	@Benchmark
+	public Class<?> warm() throws ClassNotFoundException {
+		return loader.loadClass(NAME);
+	}
+}
@@ -0,0 +1,104 @@
+package uno.cod;
+
+import com.beust.jcommander.JCommander;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import uno.cod.synthetic.Probe;
+import uno.cod.synthetic.SyntheticGame;
+import uno.cod.synthetic.SyntheticPlayer;
+import uno.cod.synthetic.SyntheticSolution;
+
+/**
+ * A temporary directory with jar files of {@link SyntheticGame} and two
+ * players (IDs 1 and 2) that Coduno is configured to use, as if it was
+ * started with <code>--game</code>, <code>--player-classpath</code> and
+ * <code>--logpath</code> pointing there.
+ */
+final class Fixture {
+	private final File directory;
+
+	Fixture() throws IOException {
+		directory = Files.createTempDirectory("coduno-bench").toFile();
+
+		Map<String, byte[]> game = new LinkedHashMap<>();
+		put(game, SyntheticGame.class);
+		put(game, SyntheticPlayer.class);
+		game.put("META-INF/services/" + Game.class.getName(), SyntheticGame.class.getName().getBytes(StandardCharsets.UTF_8));
+		write(new File(directory, "game.jar"), game);
+
+		Map<String, byte[]> player = new LinkedHashMap<>();
+		put(player, SyntheticSolution.class);
+		put(player, Probe.class);
+		player.put("META-INF/services/" + SyntheticPlayer.class.getName(), SyntheticSolution.class.getName().getBytes(StandardCharsets.UTF_8));
+
+		for (int id = 1; id <= 2; id++)
+			write(new File(directory, "players/" + id + "/tictactoe.jar"), player);
+
+		new File(directory, "logs").mkdirs();
+
+		new JCommander(new Coduno(),
+			"--game", "jar:" + new File(directory, "game.jar").toURI() + "!/",
+			"--player-classpath", new File(directory, "players").toURI().toString(),
+			"--logpath", new File(directory, "logs").toURI().toString()
+		);
+	}
+
+	/**
+	 * Returns the URL of the jar file of a player.
+	 */
+	URL getPlayerURL(int id) throws MalformedURLException {
+		return Coduno.getPlayerURL(id);
+	}
+
+	void delete() {
+		delete(directory);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+
+		if (children != null)
+			for (File child : children)
+				delete(child);
+
+		file.delete();
+	}
+
+	private static void put(Map<String, byte[]> entries, Class<?> type) throws IOException {
+		String name = type.getName().replace('.', '/') + ".class";
+
+		try (InputStream in = type.getClassLoader().getResourceAsStream(name)) {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			byte[] chunk = new byte[4096];
+			int count;
+
+			while ((count = in.read(chunk)) >= 0)
+				buffer.write(chunk, 0, count);
+
+			entries.put(name, buffer.toByteArray());
+		}
+	}
+
+	private static void write(File file, Map<String, byte[]> entries) throws IOException {
+		file.getParentFile().mkdirs();
+
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+			for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				out.putNextEntry(new JarEntry(entry.getKey()));
+				out.write(entry.getValue());
+				out.closeEntry();
+			}
+		}
+	}
+}
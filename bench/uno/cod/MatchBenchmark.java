@@ -0,0 +1,52 @@
+package uno.cod;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A whole {@link Match} of {@link uno.cod.synthetic.SyntheticGame}, from
+ * loading the players to resolving the winner. Installs
+ * {@link CodunoSecurityManager}, which needs Java 12 or later to accept
+ * <code>-Djava.security.manager=allow</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.security.manager=allow")
+public class MatchBenchmark {
+	@Param({ "1", "1000" })
+	public String turns;
+
+	private Fixture fixture;
+
+	@Setup
+	public void setUp() throws IOException {
+		fixture = new Fixture();
+	}
+
+	@TearDown
+	public void tearDown() {
+		fixture.delete();
+	}
+
+	@Benchmark
+	public String match() throws CodunoException {
+		return new Match(Arrays.asList(1, 2), Collections.singletonList(turns)).call();
+	}
+}
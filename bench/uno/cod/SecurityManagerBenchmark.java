@@ -0,0 +1,73 @@
+package uno.cod;
+
+import java.io.IOException;
+import java.security.Permission;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uno.cod.synthetic.Probe;
+
+/**
+ * Cost of {@link CodunoSecurityManager#checkPermission(Permission)} when
+ * asked by trusted code and by a player, which is denied. The manager is
+ * called directly instead of being installed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecurityManagerBenchmark {
+	private static final Permission permission = new RuntimePermission("benchmark");
+
+	private static CodunoSecurityManager manager;
+
+	private Fixture fixture;
+
+	private Runnable untrusted;
+
+	@Setup
+	public void setUp() throws IOException, ReflectiveOperationException {
+		fixture = new Fixture();
+		manager = new CodunoSecurityManager(Coduno.getPlayerClasspath().toString());
+		untrusted = (Runnable)new CodunoClassLoader(fixture.getPlayerURL(1), getClass().getClassLoader()).loadClass(Probe.class.getName()).getDeclaredConstructor().newInstance();
+	}
+
+	@TearDown
+	public void tearDown() {
+		fixture.delete();
+	}
+
+	/**
+	 * Called by {@link Probe} from the jar file of a player.
+	 */
+	public static void check() {
+		manager.checkPermission(permission);
+	}
+
+	@Benchmark
+	public void trusted() {
+		check();
+	}
+
+	@Benchmark
+	public Object untrusted() {
+		try {
+			untrusted.run();
+			throw new IllegalStateException("Player was not denied");
+		}
+		catch (SecurityException e) {
+			return e;
+		}
+	}
+}
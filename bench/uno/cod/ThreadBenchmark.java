@@ -0,0 +1,87 @@
+package uno.cod;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of running player code in its own thread via {@link Coduno#run} and
+ * {@link CodunoWorker}, and of asking a {@link CodunoThread} for its
+ * remaining time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThreadBenchmark {
+	private static final Runnable EMPTY = new Runnable() {
+		@Override
+		public void run() {
+		}
+	};
+
+	private final CountDownLatch done = new CountDownLatch(1);
+
+	private CodunoThread running;
+
+	private CodunoWorker worker;
+
+	@Setup
+	public void setUp() {
+		running = new CodunoThread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					done.await();
+				}
+				catch (InterruptedException e) {}
+			}
+		}, "benchmark", TimeUnit.HOURS.toNanos(1));
+		running.setDaemon(true);
+		running.start();
+
+		worker = new CodunoWorker("benchmark");
+	}
+
+	@TearDown
+	public void tearDown() {
+		done.countDown();
+		worker.close();
+	}
+
+	/**
+	 * A running thread that is asked for its remaining time.
+	 */
+	@Benchmark
+	public long remainingTime() {
+		return running.getRemainingTime();
+	}
+
+	/**
+	 * An empty Runnable in a new thread.
+	 */
+	@Benchmark
+	public long run() throws CodunoTimeoutException {
+		return Coduno.run("benchmark", EMPTY, 1000L);
+	}
+
+	/**
+	 * An empty Runnable handed to a thread that is already running.
+	 */
+	@Benchmark
+	public long worker() throws CodunoTimeoutException {
+		return worker.run(EMPTY, 1000);
+	}
+}
@@ -0,0 +1,14 @@
+package uno.cod.synthetic;
+
+import uno.cod.SecurityManagerBenchmark;
+
+/**
+ * Asks for a permission from a player's jar file, see
+ * {@link SecurityManagerBenchmark}.
+ */
+public class Probe implements Runnable {
+	@Override
+	public void run() {
+		SecurityManagerBenchmark.check();
+	}
+}
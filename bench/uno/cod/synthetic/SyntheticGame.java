@@ -0,0 +1,57 @@
+package uno.cod.synthetic;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import uno.cod.Game;
+import uno.cod.Solution;
+
+/**
+ * A game for two players that asks both of them for a number per turn and
+ * logs it. Its own cost is negligible, so a match of it measures the
+ * overhead of Coduno. The number of turns is given as first argument
+ * (default 100).
+ */
+public class SyntheticGame implements Game<SyntheticPlayer> {
+	private final List<SyntheticPlayer> players = new ArrayList<>();
+
+	private SyntheticPlayer winner;
+
+	@Override
+	public int getPlayerCount() {
+		return 2;
+	}
+
+	@Override
+	public Solution getWinner() {
+		return winner;
+	}
+
+	@Override
+	public <S extends Solution> void load(List<S> players) {
+		for (S player : players)
+			this.players.add((SyntheticPlayer)player);
+	}
+
+	@Override
+	public void run(List<String> args, OutputStreamWriter writer) {
+		int turns = args.isEmpty() ? 100 : Integer.parseInt(args.get(0));
+		int[] scores = new int[players.size()];
+
+		try {
+			for (int turn = 0; turn < turns; turn++) {
+				for (int i = 0; i < players.size(); i++) {
+					int move = players.get(i).move(turn);
+					scores[i] += move;
+					writer.write(turn + " " + i + " " + move + "\n");
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+
+		winner = scores[0] == scores[1] ? null : players.get(scores[0] > scores[1] ? 0 : 1);
+	}
+}
@@ -0,0 +1,10 @@
+package uno.cod.synthetic;
+
+import uno.cod.Solution;
+
+/**
+ * The interface between {@link SyntheticGame} and its players.
+ */
+public interface SyntheticPlayer extends Solution {
+	int move(int turn);
+}
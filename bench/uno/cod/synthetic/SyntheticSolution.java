@@ -0,0 +1,15 @@
+package uno.cod.synthetic;
+
+/**
+ * A player of {@link SyntheticGame} that does next to nothing.
+ */
+public class SyntheticSolution implements SyntheticPlayer {
+	@Override
+	public int move(int turn) {
+		return turn % 7;
+	}
+
+	@Override
+	public void run() {
+	}
+}
@@ -3,14 +3,67 @@ package uno.cod;
 /**
  * Basic frame for real implementations of the Solution interface.
  */
-public abstract class AbstractSolution implements Solution {
+public abstract class AbstractSolution implements Solution, Checkpointing {
+	private volatile Object checkpoint = null;
+
 	@Override
 	public abstract void run();
 	
 	/**
-	 * Returns the time remaining to finish {@link #run()}.
+	 * Returns the time remaining to finish {@link #run()} [ns], as sampled
+	 * by Coduno every few milliseconds (see <code>--watchdog-tick</code>).
+	 * Costs no more than reading a field, so it may be called in every
+	 * iteration of a search.
+	 *
+	 * @see #getExactRemainingTime()
 	 */
 	protected long getRemainingTime() {
-		return ((CodunoThread)Thread.currentThread()).getRemainingTime();
+		Thread thread = Thread.currentThread();
+
+		if (thread instanceof CodunoThread)
+			return ((CodunoThread)thread).getCoarseRemainingTime();
+
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the time remaining to finish {@link #run()} [ns], measured
+	 * right now. Asks the operating system for the CPU time of the thread,
+	 * so it should not be called more often than needed.
+	 */
+	protected long getExactRemainingTime() {
+		Thread thread = Thread.currentThread();
+
+		if (thread instanceof CodunoThread)
+			return ((CodunoThread)thread).getRemainingTime();
+
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Saves the best answer found so far, so the game can still use it if
+	 * this Solution runs out of time before returning.
+	 */
+	protected void checkpoint(Object answer) {
+		checkpoint = answer;
+	}
+
+	/**
+	 * Returns what was last passed to {@link #checkpoint(Object)}, or
+	 * <code>null</code>. Meant for games, after a run of this Solution
+	 * was stopped.
+	 */
+	@Override
+	public Object getCheckpoint() {
+		return checkpoint;
+	}
+
+	/**
+	 * Forgets the last checkpoint, usually called by the game before each
+	 * turn.
+	 */
+	@Override
+	public void clearCheckpoint() {
+		checkpoint = null;
 	}
 }
@@ -0,0 +1,284 @@
+package uno.cod;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reports operations denied by {@link CodunoSecurityManager} without
+ * blocking the thread that attempted them.
+ *
+ * Violations are put into a bounded ring buffer and written to
+ * <code>System.err</code> by a background thread, so they never mix with
+ * responses on <code>System.out</code> (see <code>--daemon</code>). Identical violations
+ * (same player, operation and top frame) are only written once per
+ * interval, followed by the number of repetitions. Each player may cause at
+ * most {@link #setRate(int)} distinct reports per interval; the rest is
+ * counted and summarized. If the buffer is full, violations are dropped and
+ * counted as well.
+ */
+final class AuditLog implements Runnable {
+	/**
+	 * Number of frames written per violation.
+	 */
+	private static final int FRAMES = 8;
+
+	private static final long INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+	private static final AtomicLong recorded = new AtomicLong();
+
+	private static final AuditLog instance = new AuditLog(1024, System.err);
+
+	/**
+	 * An operation that was denied.
+	 */
+	static final class Violation {
+		final String player;
+
+		final String source;
+
+		final String issuer;
+
+		final String permission;
+
+		final StackTraceElement[] frames;
+
+		Violation(String player, String source, String issuer, String permission, StackTraceElement[] frames) {
+			this.player = player;
+			this.source = source;
+			this.issuer = issuer;
+			this.permission = permission;
+			this.frames = frames;
+		}
+
+		/**
+		 * Identifies violations that are reported only once per interval.
+		 */
+		String key() {
+			return player + "\n" + permission + "\n" + (frames.length == 0 ? "" : frames[0].toString());
+		}
+	}
+
+	private final AtomicReferenceArray<Violation> buffer;
+
+	private final int mask;
+
+	/**
+	 * Sequence number of the next slot to be claimed by a producer.
+	 */
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * Sequence number of the next slot to be read, only written while
+	 * holding the lock of this instance.
+	 */
+	private volatile long head = 0;
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final PrintStream out;
+
+	private volatile int rate = 10;
+
+	private Thread thread;
+
+	/**
+	 * Violations reported in the current interval, with the number of
+	 * repetitions that were not written yet.
+	 */
+	private final Map<String, int[]> reported = new LinkedHashMap<>();
+
+	/**
+	 * Distinct violations reported and suppressed per player in the current
+	 * interval.
+	 */
+	private final Map<String, int[]> players = new HashMap<>();
+
+	private long interval = System.nanoTime();
+
+	/**
+	 * @param capacity rounded up to the next power of two.
+	 */
+	private AuditLog(int capacity, PrintStream out) {
+		int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		this.buffer = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+		this.out = out;
+	}
+
+	/**
+	 * Sets the number of distinct violations per player that are written
+	 * per second.
+	 */
+	static void setRate(int rate) {
+		if (rate < 0)
+			throw new IllegalArgumentException("Audit rate must not be negative");
+
+		instance.rate = rate;
+	}
+
+	/**
+	 * Queues a violation to be reported. Never blocks.
+	 */
+	static void record(Violation violation) {
+		recorded.incrementAndGet();
+		instance.start();
+		instance.offer(violation);
+	}
+
+	/**
+	 * @return number of violations recorded since the JVM started,
+	 *         including dropped and suppressed ones.
+	 */
+	static long count() {
+		return recorded.get();
+	}
+
+	/**
+	 * Writes all queued violations. Repetition counts and the budgets of
+	 * players are left to the interval of the writer, so matches ending
+	 * concurrently do not reset them for everyone.
+	 */
+	static void flush() {
+		synchronized (instance) {
+			instance.drain();
+		}
+	}
+
+	private void offer(Violation violation) {
+		long sequence;
+
+		do {
+			sequence = tail.get();
+
+			if (sequence - head >= buffer.length()) {
+				dropped.incrementAndGet();
+				return;
+			}
+		} while (!tail.compareAndSet(sequence, sequence + 1));
+
+		buffer.lazySet((int)(sequence & mask), violation);
+	}
+
+	private synchronized void start() {
+		if (thread != null)
+			return;
+
+		thread = new Thread(this, "coduno-audit");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void run() {
+		// do not keep the match that happened to start the writer
+		Match.detach();
+
+		while (true) {
+			LockSupport.parkNanos(this, INTERVAL / 10);
+
+			synchronized (this) {
+				drain();
+
+				if (System.nanoTime() - interval >= INTERVAL)
+					summarize();
+			}
+		}
+	}
+
+	private void drain() {
+		while (head < tail.get()) {
+			int index = (int)(head & mask);
+			Violation violation = buffer.get(index);
+
+			// claimed, but not yet published
+			if (violation == null)
+				return;
+
+			buffer.lazySet(index, null);
+			head = head + 1;
+			write(violation);
+		}
+	}
+
+	private void write(Violation violation) {
+		String key = violation.key();
+		int[] count = reported.get(key);
+
+		if (count != null) {
+			count[0]++;
+			return;
+		}
+
+		int[] player = players.get(violation.player);
+
+		if (player == null) {
+			player = new int[2];
+			players.put(violation.player, player);
+		}
+
+		if (player[0] >= rate) {
+			player[1]++;
+			return;
+		}
+
+		player[0]++;
+		reported.put(key, new int[1]);
+
+		StringBuilder builder = new StringBuilder("SECURITY: ");
+		builder.append(violation.permission).append(" by player ").append(violation.player).append(" from source ").append(violation.source);
+
+		if (violation.issuer != null)
+			builder.append(" issued by {").append(violation.issuer).append("}");
+
+		for (StackTraceElement frame : violation.frames)
+			builder.append(System.lineSeparator()).append("\tat ").append(frame);
+
+		out.println(builder);
+	}
+
+	/**
+	 * Writes repetition counts and starts a new interval.
+	 */
+	private void summarize() {
+		for (Map.Entry<String, int[]> entry : reported.entrySet()) {
+			if (entry.getValue()[0] > 0) {
+				String[] key = entry.getKey().split("\n", 3);
+				out.println("SECURITY: " + key[1] + " by player " + key[0] + " repeated " + entry.getValue()[0] + " times");
+			}
+		}
+
+		for (Map.Entry<String, int[]> entry : players.entrySet())
+			if (entry.getValue()[1] > 0)
+				out.println("SECURITY: " + entry.getValue()[1] + " more violations by player " + entry.getKey() + " suppressed");
+
+		long count = dropped.getAndSet(0);
+
+		if (count > 0)
+			out.println("SECURITY: " + count + " violations dropped");
+
+		reported.clear();
+		players.clear();
+		interval = System.nanoTime();
+	}
+
+	/**
+	 * Returns up to {@link #FRAMES} frames of <code>trace</code> below the
+	 * frames of {@link CodunoSecurityManager}.
+	 */
+	static StackTraceElement[] top(StackTraceElement[] trace) {
+		int start = 0;
+
+		for (int i = 0; i < trace.length; i++)
+			if (trace[i].getClassName().equals(CodunoSecurityManager.class.getName()))
+				start = i + 1;
+
+		return Arrays.copyOfRange(trace, start, Math.min(trace.length, start + FRAMES));
+	}
+}
@@ -0,0 +1,20 @@
+package uno.cod;
+
+/**
+ * Gives games access to the checkpoint of a Solution (see
+ * {@link AbstractSolution#checkpoint(Object)}). Games should use this
+ * interface rather than cast to {@link AbstractSolution}: with
+ * <code>--record-calls</code> and <code>--replay</code>, the game is handed
+ * proxies, which implement the player interface and this one only.
+ */
+public interface Checkpointing {
+	/**
+	 * Returns the answer last saved by the Solution, or <code>null</code>.
+	 */
+	Object getCheckpoint();
+
+	/**
+	 * Forgets the last checkpoint.
+	 */
+	void clearCheckpoint();
+}
@@ -0,0 +1,105 @@
+package uno.cod;
+
+import java.security.cert.Certificate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of class files read by {@link CodunoClassLoader}, so
+ * repeated loads of the same submission do not have to touch the jar file
+ * again.
+ *
+ * Entries are keyed by the SHA-256 hash of the jar and the name of the
+ * entry, so a modified jar never yields stale bytes. Only classes found in
+ * a jar are cached. The least recently used entries are evicted as soon as
+ * the total size of all cached class files exceeds {@link #getLimit()}.
+ */
+final class ClassCache {
+	/**
+	 * Rough estimate of the memory needed per entry besides the class file
+	 * itself.
+	 */
+	private static final int OVERHEAD = 64;
+
+	private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+	private static long size = 0;
+
+	private static long limit = 64L << 20;
+
+	private ClassCache() {
+	}
+
+	/**
+	 * A cached class file. {@link #bytes} is <code>null</code> if the jar
+	 * does not contain the requested class.
+	 */
+	static final class Entry {
+		final byte[] bytes;
+
+		final Certificate[] certificates;
+
+		Entry(byte[] bytes, Certificate[] certificates) {
+			this.bytes = bytes;
+			this.certificates = certificates;
+		}
+
+		private long weight(String key) {
+			return OVERHEAD + 2 * key.length() + (bytes == null ? 0 : bytes.length);
+		}
+	}
+
+	/**
+	 * Returns the maximum number of bytes the cache may hold.
+	 */
+	static synchronized long getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Sets the maximum number of bytes the cache may hold and evicts
+	 * entries as needed. A limit of 0 disables the cache.
+	 */
+	static synchronized void setLimit(long bytes) {
+		if (bytes < 0)
+			throw new IllegalArgumentException("Cache limit must not be negative");
+
+		limit = bytes;
+		evict();
+	}
+
+	static synchronized Entry get(String key) {
+		return entries.get(key);
+	}
+
+	static synchronized void put(String key, Entry entry) {
+		long weight = entry.weight(key);
+
+		if (weight > limit)
+			return;
+
+		Entry previous = entries.put(key, entry);
+
+		if (previous != null)
+			size -= previous.weight(key);
+
+		size += weight;
+		evict();
+	}
+
+	static synchronized void clear() {
+		entries.clear();
+		size = 0;
+	}
+
+	private static void evict() {
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+
+		while (size > limit && iterator.hasNext()) {
+			Map.Entry<String, Entry> eldest = iterator.next();
+			size -= eldest.getValue().weight(eldest.getKey());
+			iterator.remove();
+		}
+	}
+}
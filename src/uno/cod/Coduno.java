@@ -5,20 +5,28 @@ import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 import uno.cod.validators.*;
 import uno.cod.converters.*;
+import uno.cod.tournament.Pairing;
+import uno.cod.tournament.Tournament;
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
 import static java.lang.Long.MAX_VALUE;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.ServiceConfigurationError;
 import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import static java.util.logging.Level.SEVERE;
 import java.util.logging.Logger;
@@ -53,17 +61,68 @@ public class Coduno {
 	 * user IDs in the Coduno SQL database. Specified by commandline argument
 	 * <code>--player</code> (multiple times).
 	 */
-	@Parameter(names = "--player", description = "List of player IDs participating in this game", required = true)
+	@Parameter(names = "--player", description = "List of player IDs participating in this game")
 	private static List<Integer> players = new ArrayList<>();
 
 	/**
 	 * Because Java cannot wait for a {@link java.lang.Thread} for a specific
-	 * amount of CPU time, we wait for <code>real time * timeFactor</code>
-	 * and then check if it is running and the Thread's CPU time.
+	 * amount of CPU time, the original implementation waited for
+	 * <code>real time * timeFactor</code> and then checked the Thread's CPU
+	 * time. Budgets are now enforced by the {@link Watchdog} sampling CPU
+	 * time directly, see <code>--watchdog-tick</code>, so this value is
+	 * only accepted for compatibility.
 	 * Specified by commandline argument <code>--time-factor</code>.
 	 */
-	@Parameter(names = "--time-factor", description = "Realtime/CPU-time ratio for timeouts.")
+	@Deprecated
+	@Parameter(names = "--time-factor", description = "Deprecated, CPU-time is sampled directly (see --watchdog-tick)")
 	private static double timeFactor = 1.3;
+
+	/**
+	 * Heap memory a thread started via {@link #run} may allocate (in MiB).
+	 * Does not apply to the game itself. Specified by commandline argument
+	 * <code>--allocation-limit</code>.
+	 */
+	@Parameter(names = "--allocation-limit", description = "Heap memory a player may allocate per run [MiB], 0 for no limit")
+	private static long allocationLimit = 0;
+
+	/**
+	 * Number of instructions of player code allowed per millisecond of
+	 * timeout. If positive, budgets are enforced by counting instructions
+	 * instead of measuring CPU time.
+	 * Specified via commandline argument <code>--meter</code>.
+	 *
+	 * @see uno.cod.Meter
+	 */
+	@Parameter(names = "--meter", description = "Enforce budgets by counting bytecode instructions of players instead of measuring CPU time, that many per ms of timeout (0 to disable)")
+	private static long meter = 0;
+
+	/**
+	 * Whether to confine players by verifying their bytecode instead of
+	 * installing {@link CodunoSecurityManager}, and to cancel them at
+	 * cancellation points instead of stopping their threads. Needed on
+	 * JDKs without {@link SecurityManager} and {@link Thread#stop()}.
+	 * Set to true with commandline flag <code>--bytecode-sandbox</code>.
+	 *
+	 * @see uno.cod.Sandbox
+	 */
+	@Parameter(names = "--bytecode-sandbox", description = "Confine players by verifying their bytecode as it is loaded and cancel them cooperatively, instead of relying on a SecurityManager and Thread.stop()")
+	private static boolean bytecodeSandbox = false;
+
+	/**
+	 * Interval in which the {@link Watchdog} samples the CPU time of all
+	 * running {@link CodunoThread}s (in milliseconds). Specified by
+	 * commandline argument <code>--watchdog-tick</code>.
+	 */
+	@Parameter(names = "--watchdog-tick", description = "Interval for checking CPU-time budgets of running threads [ms]")
+	private static long watchdogTick = 10;
+
+	/**
+	 * Number of distinct security violations per player that are reported
+	 * per second, see {@link AuditLog}. Specified via commandline argument
+	 * <code>--audit-rate</code>.
+	 */
+	@Parameter(names = "--audit-rate", description = "Maximum number of distinct security violations reported per player and second")
+	private static int auditRate = 10;
 	
 	/**
 	 * Name of the directory where player code and classes are stored, used
@@ -98,6 +157,14 @@ public class Coduno {
 	@Parameter(names = "--avoid-static", description = "Prevent players from communicating inside a class via static variables. If enabled, class files are loaded explicitly at every instantiation.")
 	private static boolean avoidStatic = false;
 
+	/**
+	 * Number of clones per player that are kept ready for
+	 * {@link #reload(Solution)} if <code>--avoid-static</code> is set.
+	 * Specified via commandline argument <code>--reload-depth</code>.
+	 */
+	@Parameter(names = "--reload-depth", description = "Number of isolated Solution instances per player prepared in the background with --avoid-static")
+	private static int reloadDepth = 2;
+
 	/**
 	 * Loglevel for the whole Coduno environment.
 	 *
@@ -108,6 +175,146 @@ public class Coduno {
 	@Parameter(names = "--loglevel", description = "Sets the loglevel (see java.util.logging.Level docs)", converter = LevelConverter.class, validateWith = LevelValidator.class)
 	private static Level level = SEVERE;
 
+	/**
+	 * Upper bound for the class files kept in memory to avoid reading player
+	 * jars again (in MiB).
+	 * Specified via commandline argument <code>--class-cache</code>.
+	 *
+	 * @see uno.cod.ClassCache
+	 */
+	@Parameter(names = "--class-cache", description = "Size of the cache for class files read from jars [MiB], 0 to disable")
+	private static long classCache = 64;
+
+	/**
+	 * Directory where outcomes and logfiles of matches are kept, so that
+	 * matches between unchanged players are not simulated again.
+	 * Specified via commandline argument <code>--result-cache</code>.
+	 *
+	 * @see uno.cod.ResultCache
+	 */
+	@Parameter(names = "--result-cache", description = "Directory to cache results of matches in, keyed by a hash of game, players and arguments")
+	private static File resultCache = null;
+
+	private static ResultCache results = null;
+
+	/**
+	 * Keeps the JVM running and reads match requests (one per line) instead
+	 * of simulating the players given via <code>--player</code>.
+	 * Set to true with commandline flag <code>--daemon</code>.
+	 *
+	 * @see uno.cod.Daemon
+	 */
+	@Parameter(names = "--daemon", description = "Keep running and read match requests ('<player> <player> ... [-- <arg> ...]', one per line) from stdin or --port")
+	private static boolean daemon = false;
+
+	/**
+	 * File with one match request per line (see {@link Match#parse}) that
+	 * are simulated in this JVM, up to <code>--parallelism</code> at the
+	 * same time. Results are written to stdout as matches finish, in the
+	 * format of the daemon mode.
+	 * Specified via commandline argument <code>--manifest</code>.
+	 *
+	 * @see uno.cod.Daemon
+	 */
+	@Parameter(names = "--manifest", description = "Simulate all matches listed in a file ('<player> <player> ... [-- <arg> ...]', one per line)")
+	private static File manifest = null;
+
+	/**
+	 * Port on the loopback interface where match requests are accepted
+	 * in daemon mode. If not set, requests are read from stdin.
+	 * Specified via commandline argument <code>--port</code>.
+	 */
+	@Parameter(names = "--port", description = "Local port to accept match requests on in daemon mode (default: stdin)")
+	private static Integer port = null;
+
+	/**
+	 * Maximum number of matches simulated at the same time.
+	 * Specified via commandline argument <code>--parallelism</code>.
+	 */
+	@Parameter(names = "--parallelism", description = "Maximum number of matches running concurrently")
+	private static int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Number of worker JVMs to simulate matches in with
+	 * <code>--daemon</code> or <code>--manifest</code>. If zero, matches are
+	 * simulated in this JVM.
+	 * Specified via commandline argument <code>--workers</code>.
+	 *
+	 * @see uno.cod.Supervisor
+	 */
+	@Parameter(names = "--workers", description = "Number of pre-started worker JVMs to simulate matches in with --daemon or --manifest, 0 to simulate in this JVM")
+	private static int workers = 0;
+
+	/**
+	 * Number of matches after which a worker JVM is replaced by a fresh one.
+	 * Specified via commandline argument <code>--recycle-after</code>.
+	 */
+	@Parameter(names = "--recycle-after", description = "Number of matches after which a worker JVM is replaced (also replaced after any security violation)")
+	private static int recycleAfter = 100;
+
+	/**
+	 * Set by {@link uno.cod.Supervisor} for the JVMs it starts.
+	 */
+	@Parameter(names = "--worker", hidden = true)
+	private static boolean worker = false;
+
+	/**
+	 * Plays a whole tournament between all players given via
+	 * <code>--player</code> instead of a single match.
+	 * Specified via commandline argument <code>--tournament</code>.
+	 *
+	 * @see uno.cod.tournament.Tournament
+	 */
+	@Parameter(names = "--tournament", description = "Play a tournament between all players (round-robin, swiss or swiss:<rounds>)", converter = PairingConverter.class, validateWith = PairingValidator.class)
+	private static Pairing tournament = null;
+
+	/**
+	 * Records what the players answer to the game in a file next to the
+	 * logfile (extension <code>.calls</code>), so the match can be replayed
+	 * via <code>--replay</code>.
+	 * Set to true with commandline flag <code>--record-calls</code>.
+	 *
+	 * @see uno.cod.Replay
+	 */
+	@Parameter(names = "--record-calls", description = "Record the answers of the players to replay the match later")
+	private static boolean recordCalls = false;
+
+	/**
+	 * A file written with <code>--record-calls</code>. The match is
+	 * simulated again with the recorded answers instead of the players.
+	 * Specified via commandline argument <code>--replay</code>.
+	 */
+	@Parameter(names = "--replay", description = "Replay a match from a file written with --record-calls, without running player code")
+	private static File replay = null;
+
+	/**
+	 * File (or named pipe) the outcome of every match is appended to, as
+	 * one line of JSON per match.
+	 * Specified via commandline argument <code>--results</code>.
+	 *
+	 * @see uno.cod.ResultSink
+	 */
+	@Parameter(names = "--results", description = "Append the outcome of every match to this file or pipe (one line of JSON per match)")
+	private static File resultFile = null;
+
+	private static ResultSink sink = null;
+
+	/**
+	 * Writes how long the phases of every match took to stderr, as one line
+	 * of JSON per match.
+	 * Set to true with commandline flag <code>--timings</code>.
+	 *
+	 * @see uno.cod.Timings
+	 */
+	@Parameter(names = "--timings", description = "Print wall-clock time, CPU time and loaded classes per phase of every match to stderr (JSON)")
+	private static boolean timings = false;
+
+	/**
+	 * Phases that happen once per JVM, that is parsing arguments and
+	 * discovering the Game.
+	 */
+	private static final Timings startup = new Timings();
+
 	/**
 	 * Indicates if help was requested via commandline.
 	 */
@@ -115,9 +322,30 @@ public class Coduno {
 	private static boolean help;
 
 	/**
-	 * Holds the current instance of Game to be passed statically.
+	 * Reports exceptions thrown by threads started via {@link #run}, except
+	 * for those stopped on purpose.
 	 */
-	private static Game game;
+	static final Thread.UncaughtExceptionHandler handler = new Thread.UncaughtExceptionHandler() {
+		@Override
+		public void uncaughtException(Thread t, Throwable e) {
+			if (e.getClass() != ThreadDeath.class && !(e instanceof CodunoTerminationError)) {
+				System.err.println("UncaughtException " + e + " in " + t.getName() + ":");
+				e.printStackTrace();
+			}
+		}
+	};
+
+	/**
+	 * The Game implementation found in {@link #loader}, remembered to
+	 * avoid repeated lookups via {@link java.util.ServiceLoader}.
+	 */
+	private static Class<? extends Game> gameClass;
+
+	/**
+	 * Name of the interface given via <code>--player-interface</code>, as
+	 * {@link #newGame()} may replace {@link #face} later on.
+	 */
+	private static String playerInterface;
 
 	static {
 		try {
@@ -130,14 +358,17 @@ public class Coduno {
 	}
 
 	/**
-	 * Returns the currently loaded/ongoing Game.
+	 * Returns the Game of the match the calling thread belongs to.
+	 *
+	 * @see uno.cod.Match#current()
 	 */
 	public static Game getGame() {
-		return game;
+		Match match = Match.current();
+		return match == null ? null : match.getGame();
 	}
 
 	/**
-	 * Returns the supertype that {@link #game} requires all Solutions to
+	 * Returns the supertype that the Game requires all Solutions to
 	 * implement in order to be compatible with the Game implementation.
 	 * All classes implementing this interfaces are considered as third
 	 * party and are gerneall not trusted.
@@ -146,10 +377,157 @@ public class Coduno {
 		return face;
 	}
 
+	/**
+	 * Returns the ClassLoader that loaded the game provided via
+	 * <code>--game</code>. It is the parent of all player ClassLoaders.
+	 */
+	static CodunoClassLoader getGameLoader() {
+		return loader;
+	}
+
+	/**
+	 * Returns the directory where player code and classes are stored.
+	 */
+	static URL getPlayerClasspath() {
+		return classes;
+	}
+
+	/**
+	 * Returns the URL of the jar file that holds the Solution of a player.
+	 */
+	static URL getPlayerURL(Integer player) throws MalformedURLException {
+		return new URL("jar:" + classes.toString() + player.toString() + "/tictactoe.jar!/");
+	}
+
+	/**
+	 * Returns the file the simulation between <code>players</code> is
+	 * logged to.
+	 */
+	static File getLogFile(List<Integer> players) {
+		String gamedir = loader.getURLs()[0].toString();
+		gamedir = gamedir.substring(0, gamedir.indexOf(".jar!/"));
+		gamedir = gamedir.substring(gamedir.lastIndexOf("/"));
+		return new File(logs.getPath() + gamedir + "/" + players.toString().replace("[", "").replace("]", "").replace(", ", "-") + ".log");
+	}
+
+	/**
+	 * Returns the cache given via <code>--result-cache</code>, or
+	 * <code>null</code> if there is none.
+	 */
+	static ResultCache getResultCache() {
+		return results;
+	}
+
+	/**
+	 * Returns the sink given via <code>--results</code>, or
+	 * <code>null</code> if there is none.
+	 */
+	static ResultSink getResultSink() {
+		return sink;
+	}
+
+	static boolean isRecordCalls() {
+		return recordCalls;
+	}
+
+	static boolean isTimings() {
+		return timings;
+	}
+
+	static Timings getStartupTimings() {
+		return startup;
+	}
+
+	static long getGameTimeout() {
+		return gameTimeout;
+	}
+
+	/**
+	 * Returns the number of bytes a thread started via {@link #run} may
+	 * allocate, not limited if not positive.
+	 */
+	static long getAllocationLimit() {
+		return allocationLimit << 20;
+	}
+
+	static boolean isAvoidStatic() {
+		return avoidStatic;
+	}
+
+	/**
+	 * Returns the name of the interface given via
+	 * <code>--player-interface</code>, or <code>null</code>.
+	 */
+	static String getPlayerInterface() {
+		return playerInterface;
+	}
+
+	static int getReloadDepth() {
+		return reloadDepth;
+	}
+
+	/**
+	 * Creates a new instance of the Game provided via <code>--game</code>.
+	 * The game jar is only looked up via {@link java.util.ServiceLoader} on
+	 * the first call, later calls instantiate the same class directly.
+	 * {@link #face} is set as a side effect of the first call.
+	 *
+	 * @throws CodunoException if no Game could be loaded.
+	 */
+	@SuppressWarnings("unchecked")
+	static synchronized Game newGame() throws CodunoException {
+		if (gameClass != null) {
+			try {
+				return gameClass.getConstructor().newInstance();
+			}
+			catch (ReflectiveOperationException e) {
+				throw new CodunoException("Unable to instantiate " + gameClass.getName(), e);
+			}
+		}
+
+		Timings.Phase phase = startup.start("discovery");
+
+		try {
+			ServiceLoader<Game> gameService = ServiceLoader.load(Game.class, loader);
+
+			for (Game item : gameService) {
+				if (item != null) {
+					for (Type element : item.getClass().getGenericInterfaces())
+						if (element instanceof ParameterizedType && Game.class.isAssignableFrom((Class)((ParameterizedType)element).getRawType()))
+							face = (Class<Solution>)((ParameterizedType)element).getActualTypeArguments()[0];
+
+					if (face == null)
+						continue;
+
+					gameClass = item.getClass();
+					return item;
+				}
+			}
+		}
+		finally {
+			phase.close();
+		}
+
+		throw new CodunoException("Unable to load Game. Please check META-INF/services/uno.cod.Game");
+	}
+
+	/**
+	 * Installs {@link CodunoSecurityManager} unless it is already in place.
+	 */
+	static synchronized void secure() {
+		if (Sandbox.isEnabled())
+			return;
+
+		if (!(System.getSecurityManager() instanceof CodunoSecurityManager))
+			System.setSecurityManager(new CodunoSecurityManager(classes.toString()));
+	}
+
 	public static void main(final String[] args) {
 		Coduno main = new Coduno();
 		JCommander commander;
 
+		Timings.Phase phase = startup.start("arguments");
+
 		try {
 			commander = new JCommander(main, args);
 		}
@@ -158,6 +536,9 @@ public class Coduno {
 			System.exit(1);
 			return;
 		}
+		finally {
+			phase.close();
+		}
 
 		commander.setProgramName("java [java-options] uno.cod.Coduno");
 
@@ -178,113 +559,152 @@ public class Coduno {
 
 		Logger.getGlobal().setLevel(level);
 
-		ServiceLoader<Game> gameService = ServiceLoader.load(Game.class, loader);
+		if (face != null)
+			playerInterface = face.getName();
 
-		for (Game item : gameService) {
-			if (item != null) {
-				for (Type element : item.getClass().getGenericInterfaces())
-					if (((ParameterizedType)element).getRawType().equals(Game.class))
-						face = (Class<Solution>)((ParameterizedType)element).getActualTypeArguments()[0];
+		// Only responses may be written to stdout of a worker, everything
+		// else (including the audit log) goes to stderr.
+		PrintStream protocol = System.out;
 
-				if (face == null)
-					continue;
+		if (worker)
+			System.setOut(System.err);
 
-				game = item;
-				break;
-			}
+		try {
+			ClassCache.setLimit(classCache << 20);
+			Watchdog.setTick(watchdogTick);
+			Meter.setRate(meter);
+			Sandbox.setEnabled(bytecodeSandbox);
+			AuditLog.setRate(auditRate);
+			Metrics.register();
+
+			if (resultCache != null)
+				results = new ResultCache(resultCache);
+
+			if (resultFile != null)
+				sink = new ResultSink(resultFile);
 		}
-
-		if (game == null) {
-			System.out.println("Unable to load Game. Please check META-INF/services/uno.cod.Game");
+		catch (IllegalArgumentException|IOException e) {
+			System.err.println(e.getMessage());
 			System.exit(1);
 		}
 
-		Logger.getGlobal().info("Found " + players.size() + " players: " + players);
+		if (worker) {
+			// records are passed on to the Supervisor, see Supervisor.work
+			sink = new ResultSink(protocol);
 
-		String gamedir = loader.getURLs()[0].toString();
-		gamedir = gamedir.substring(0, gamedir.indexOf(".jar!/"));
-		gamedir = gamedir.substring(gamedir.lastIndexOf("/"));
-		final File logfile = new File(logs.getPath() + gamedir + "/" + players.toString().replace("[", "").replace("]", "").replace(", ", "-") + ".log");
+			try {
+				Supervisor.work(new BufferedReader(new InputStreamReader(System.in, "UTF-8")), protocol);
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
 
-		if (!logfile.exists())
-			logfile.getParentFile().mkdirs();
+			// Player threads that were stopped may still linger.
+			System.exit(0);
+		}
 
-		List<Solution> list = new ArrayList<Solution>(players.size());
+		if (daemon || manifest != null) {
+			try {
+				newGame();
+			}
+			catch (CodunoException e) {
+				System.out.println(e.getMessage());
+				System.exit(1);
+			}
 
-		boolean simulate = !logfile.exists();
+			Daemon server = null;
 
-		for (Integer item : players) {
 			try {
-				if (!simulate)
-					if (logfile.lastModified() < new File(classes.getPath() + item.toString() + ".jar").lastModified())
-						simulate = true;
-
-				ServiceLoader<Solution> service = ServiceLoader.load(face, new CodunoClassLoader(new URL("jar:" + classes.toString() + item.toString() + "/tictactoe.jar!/"), loader));
+				server = workers > 0 ? new Supervisor(workers, recycleAfter, Supervisor.command(args)) : new Daemon(parallelism);
+			}
+			catch (IllegalArgumentException e) {
+				System.err.println(e.getMessage());
+				System.exit(1);
+			}
 
-				if (!service.iterator().hasNext()) {
-					System.err.println("Unable to load Solution for player " + item + ". Please check " + classes + "/" + item + ".jar!/META-INF/services/" + face.getName());
-					System.exit(1);
-				}
+			try {
+				if (manifest != null)
+					server.serve(new BufferedReader(new InputStreamReader(new FileInputStream(manifest), "UTF-8")), new PrintWriter(System.out));
+				else if (port == null)
+					server.serve(new BufferedReader(new InputStreamReader(System.in)), new PrintWriter(System.out));
+				else
+					server.listen(port);
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+			finally {
+				server.shutdown();
+			}
+			return;
+		}
 
-				Solution solution = service.iterator().next();
+		if (replay != null) {
+			try {
+				Match match = Match.replay(replay);
+				String winner = match.call();
+				System.out.println(winner == null ? "Tie!" : "Winner: " + winner);
 
-				if (solution == null) {
-					System.err.println("Unable to load Solution for player " + item + ". Please check " + classes + "/" + item + ".jar!/META-INF/services/" + face.getName());
-					System.exit(1);
-				}
+				File original = getLogFile(match.getPlayers());
 
-				list.add(solution);
+				if (original.exists())
+					System.out.println(Arrays.equals(Files.readAllBytes(original.toPath()), Files.readAllBytes(match.getLogFile().toPath())) ? "Log verified." : "Log differs from " + original);
 			}
-			catch (IOException|SecurityException|ServiceConfigurationError e) {
-				e.printStackTrace();
+			catch (CodunoException|IOException e) {
+				System.out.println(e.getMessage());
 				System.exit(1);
 			}
+			return;
 		}
 
-		if (!simulate) {
-			System.out.println("The player's jar files have not been modified.");
-			System.exit(0);
+		if (players.isEmpty()) {
+			System.err.println("The following option is required: --player");
+			System.exit(1);
 		}
 
-		game.load(list);
+		if (tournament != null) {
+			try {
+				Tournament instance = new Tournament(players, tournament, newGame().getPlayerCount(), Coduno.args, parallelism);
+				instance.call().print(instance.getPlayers(), new PrintWriter(System.out));
+			}
+			catch (CodunoException|IllegalArgumentException e) {
+				System.out.println(e.getMessage());
+				System.exit(1);
+			}
+			catch (InterruptedException e) {
+				System.exit(1);
+			}
+			return;
+		}
 
-		System.setSecurityManager(new CodunoSecurityManager(classes.toString()));
+		Match match = new Match(players, Coduno.args);
 
-		if (players.size() != Coduno.game.getPlayerCount()) {
-			System.out.println("Wrong player count!");
-			System.exit(1);
+		if (results == null && !match.isModified()) {
+			System.out.println("The player's jar files have not been modified.");
+			System.exit(0);
 		}
 
+		String winner = null;
+
 		try {
-			final OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(logfile));
-			run(game.getClass().getName() + "#run", new Runnable() {
-				@Override
-				public void run() {
-					game.run(Coduno.args, writer);
-
-					try {
-						writer.close();
-					}
-					catch (IOException e) {}
-				}
-			}, gameTimeout);
+			winner = match.call();
 		}
-		catch (CodunoTimeoutException|FileNotFoundException e) {
-			e.printStackTrace();
+		catch (CodunoException e) {
+			if (e.getCause() == null && !(e instanceof CodunoTimeoutException))
+				System.out.println(e.getMessage());
+			else
+				e.printStackTrace();
+
 			System.exit(1);
 		}
-		Class result = game.getWinner().getClass();
 
-		if (result == null) {
+		if (winner == null) {
 			System.out.println("Tie!");
 			return;
 		}
-		try {
-			System.out.println("Winner: " + resolve(result));
-		}
-		catch (IllegalArgumentException e) {
-			e.printStackTrace();
-		}
+
+		System.out.println("Winner: " + winner);
 	}
 
 	/**
@@ -292,17 +712,27 @@ public class Coduno {
 	 * to obtain a clone of a Solution, that is itself a Solution but does
 	 * not share the same static space. This is achieved by loading the
 	 * class again with a different ClassLoader.
+	 *
+	 * If the match was started with <code>--avoid-static</code>, clones
+	 * are prepared in the background (see <code>--reload-depth</code>), so
+	 * this method usually returns without loading any classes.
+	 *
+	 * @return the clone, or <code>null</code> if it could not be loaded.
 	 */
-	public Solution reload(final Solution solution) {
-		// TODO iterate
+	@SuppressWarnings("unchecked")
+	public static Solution reload(final Solution solution) {
+		Match match = Match.current();
 
-		ServiceLoader<Solution> loaders = ServiceLoader.load(face, new CodunoClassLoader(solution.getClass().getProtectionDomain().getCodeSource().getLocation(), loader));
+		try {
+			if (match != null)
+				return match.reload(solution);
 
-		if (!loaders.iterator().hasNext()) {
+			return SolutionPool.create(solution.getClass().getProtectionDomain().getCodeSource().getLocation(), loader, face);
+		}
+		catch (CodunoException e) {
+			Logger.getGlobal().warning(e.getMessage());
 			return null;
 		}
-
-		return loaders.iterator().next();
 	}
 
 	/**
@@ -312,15 +742,7 @@ public class Coduno {
 	 * @see #run(String, Runnable, long, Thread.UncaughtExceptionHandler)
 	 */
 	public static long run(String name, final Runnable runnable, Long timeout) throws CodunoTimeoutException {
-		return run(name, runnable, timeout, new Thread.UncaughtExceptionHandler() {
-			@Override
-			public void uncaughtException(Thread t, Throwable e) {
-				if (e.getClass() != ThreadDeath.class) {
-					System.err.println("UncaughtException " + e + " in " + t.getName() + ":");
-					e.printStackTrace();
-				}
-			}
-		});
+		return run(name, runnable, timeout, handler);
 	}
 
 	/**
@@ -338,52 +760,139 @@ public class Coduno {
 	 * @throws CodunoTimeoutException if the thread attempted to execute
 	 *                                longer than <code>timeout</code>
 	 *                                milliseconds.
-	 * @see java.lang.management.ThreadMXBean#getCurrentThreadCpuTime
+	 * @throws CodunoAllocationException if the thread attempted to
+	 *                                   allocate more than
+	 *                                   <code>--allocation-limit</code>.
+	 * @see #submit(String, Runnable, long, Thread.UncaughtExceptionHandler)
+	 * @see #player(Runnable)
 	 */
-	@SuppressWarnings("deprecation")
 	public static long run(String name, final Runnable runnable, long timeout, Thread.UncaughtExceptionHandler handler) throws CodunoTimeoutException {
-		if (name == null) name = Long.toString(System.nanoTime(), 32);
+		return run(name, runnable, timeout, getAllocationLimit(), handler);
+	}
 
-		CodunoThread thread = new CodunoThread(runnable, "coduno-" + Long.toString(System.nanoTime(), 16) + "-" + name, timeout * 1000000);
-		thread.setUncaughtExceptionHandler(handler);
-		thread.start();
+	/**
+	 * Basically the same as {@link #run(String, Runnable, long, Thread.UncaughtExceptionHandler)}
+	 * but with an explicit limit for heap allocations.
+	 *
+	 * @param allocation maximum number of bytes the thread may allocate,
+	 *                   not limited if not positive.
+	 */
+	public static long run(String name, final Runnable runnable, long timeout, long allocation, Thread.UncaughtExceptionHandler handler) throws CodunoTimeoutException {
+		return run(player(runnable), name, runnable, timeout, allocation, handler);
+	}
+
+	/**
+	 * Returns the player the overloads without a Solution charge a run to:
+	 * <code>runnable</code> itself if it is a Solution. Otherwise, as for
+	 * an anonymous class around a call of a player, the CPU time is not
+	 * charged to anyone and {@link MetricsMXBean#getPlayerCpuTime()} and
+	 * the <code>cpu</code> of <code>--results</code> stay empty. Games
+	 * should then use the overloads that take the Solution.
+	 */
+	static Solution player(Runnable runnable) {
+		return runnable instanceof Solution ? (Solution)runnable : null;
+	}
+
+	/**
+	 * Basically the same as {@link #run(Solution, String, Runnable, long, long, Thread.UncaughtExceptionHandler)}
+	 * with the allocation limit given via <code>--allocation-limit</code>
+	 * and a standard {@link java.lang.Thread.UncaughtExceptionHandler}.
+	 */
+	public static long run(Solution player, String name, final Runnable runnable, long timeout) throws CodunoTimeoutException {
+		return run(player, name, runnable, timeout, getAllocationLimit(), handler);
+	}
+
+	/**
+	 * Basically the same as {@link #run(String, Runnable, long, long, Thread.UncaughtExceptionHandler)}
+	 * but charges the CPU time of the run to a player, see
+	 * {@link MetricsMXBean#getPlayerCpuTime()}.
+	 *
+	 * @param player the Solution <code>runnable</code> calls, may be
+	 *               <code>null</code> if it is a run of the game itself.
+	 */
+	public static long run(Solution player, String name, final Runnable runnable, long timeout, long allocation, Thread.UncaughtExceptionHandler handler) throws CodunoTimeoutException {
+		long start = System.nanoTime();
+		CodunoThread thread = start(name, runnable, timeout, allocation, handler);
+		CompletableFuture<Long> result = Watchdog.watch(thread);
 
 		try {
-			thread.join((int)Math.ceil(timeout * timeFactor));
+			return result.get();
 		}
 		catch (InterruptedException e) {
-			thread.stop();
+			thread.terminate();
 			return thread.getTotalTime();
 		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof CodunoTimeoutException)
+				throw (CodunoTimeoutException)e.getCause();
 
-/*		if (thread.isAlive()) {
-			try {
-				thread.stop();
-			}
-			catch (SecurityException e) {
-				e.printStackTrace();
-			}
-			finally {
-				throw new CodunoTimeoutException("Thread " + thread.getName() + " ran more than " + timeout * timeFactor + "ms realtime.");
-			}
-		} */
-		while (thread.getRemainingTime() > 0 && thread.isAlive()) {
-			try {
-				thread.join((int)Math.ceil(timeout * (timeFactor - 1.0)));
-			}
-			catch (InterruptedException e) {
-				thread.stop();
-				return thread.getTotalTime();
-			}
+			throw new IllegalStateException(e.getCause());
 		}
+		finally {
+			Metrics.ran(System.nanoTime() - start);
+			boolean expired = result.isCompletedExceptionally();
+			Metrics.charge(Match.current(), player, expired || !result.isDone() ? thread.getCurrentTime() : result.join(), expired);
+		}
+	}
 
-		if (thread.getRemainingTime() < 0) {
-			thread.stop();
+	/**
+	 * Basically the same as {@link #submit(String, Runnable, long, Thread.UncaughtExceptionHandler)}
+	 * but does install a standard {@link java.lang.Thread.UncaughtExceptionHandler}.
+	 */
+	public static CompletableFuture<Long> submit(String name, final Runnable runnable, long timeout) {
+		return submit(name, runnable, timeout, handler);
+	}
 
-			throw new CodunoTimeoutException("Thread " + thread.getName() + " ran " + thread.getTotalTime() + "ns CPU-time.");
-		}
+	/**
+	 * Starts a {@link java.lang.Runnable} in a {@link uno.cod.CodunoThread}
+	 * supervised by the {@link Watchdog} and returns immediately.
+	 *
+	 * @param name gives the {@link java.lang.Thread} a name. It is appended
+	 *             to <code>"coduno-<i>id</i>"</code>.
+	 * @param runnable the class, but basically Method, to be run by the
+	 *                 thread.
+	 * @param timeout maximum CPU-time the {@link java.lang.Thread} is
+	 *                is allowed to run for [ms].
+	 * @return completes with the CPU-time the thread used [ns], or with a
+	 *         {@link CodunoTimeoutException} if it was stopped because it
+	 *         ran longer than <code>timeout</code> (a
+	 *         {@link CodunoAllocationException} if it allocated more than
+	 *         <code>--allocation-limit</code>).
+	 */
+	public static CompletableFuture<Long> submit(String name, final Runnable runnable, long timeout, Thread.UncaughtExceptionHandler handler) {
+		return submit(player(runnable), name, runnable, timeout, handler);
+	}
 
-		return thread.getTotalTime();
+	/**
+	 * Basically the same as {@link #submit(String, Runnable, long, Thread.UncaughtExceptionHandler)}
+	 * but charges the CPU time of the run to a player, see
+	 * {@link MetricsMXBean#getPlayerCpuTime()}.
+	 *
+	 * @param player the Solution <code>runnable</code> calls, may be
+	 *               <code>null</code> if it is a run of the game itself.
+	 */
+	public static CompletableFuture<Long> submit(final Solution player, String name, final Runnable runnable, long timeout, Thread.UncaughtExceptionHandler handler) {
+		final CodunoThread thread = start(name, runnable, timeout, getAllocationLimit(), handler);
+		final Match match = Match.current();
+
+		return Watchdog.watch(thread).whenComplete(new BiConsumer<Long, Throwable>() {
+			@Override
+			public void accept(Long time, Throwable failure) {
+				Metrics.charge(match, player, time == null ? thread.getCurrentTime() : time, failure != null);
+			}
+		});
+	}
+
+	private static CodunoThread start(String name, final Runnable runnable, long timeout, long allocation, Thread.UncaughtExceptionHandler handler) {
+		if (name == null) name = Long.toString(System.nanoTime(), 32);
+
+		CodunoThread thread = new CodunoThread(runnable, "coduno-" + Long.toString(System.nanoTime(), 16) + "-" + name, Meter.backstop(timeout * 1000000));
+		thread.setAllocationLimit(allocation);
+		thread.setInstructionLimit(Meter.budget(timeout));
+		thread.setBudget(0, thread.getTimeout());
+		thread.setUncaughtExceptionHandler(handler);
+		thread.start();
+		return thread;
 	}
 
 	/**
@@ -404,21 +913,39 @@ public class Coduno {
 		if (!face.isAssignableFrom(c))
 			throw new IllegalArgumentException();
 
-		String id = c.getProtectionDomain().getCodeSource().getLocation().getPath();
-		id = id.substring(0, id.indexOf("!/") - 4);
+		return resolve(c.getProtectionDomain().getCodeSource().getLocation());
+	}
 
-		try {
-			id = new URL(id).getPath();
-		}
-		catch (MalformedURLException e) {
-			throw new IllegalArgumentException(e);
+	/**
+	 * Gets the unique ID of the player whose jar file is at
+	 * <code>location</code>.
+	 *
+	 * @throws IllegalArgumentException if the jar file does not lie in
+	 *         {@link #classes} or the resulting ID is no integer.
+	 */
+	static String resolve(final URL location) {
+		String id = location.getPath();
+
+		if (location.getProtocol().equals("jar")) {
+			id = id.substring(0, id.contains("!/") ? id.indexOf("!/") : id.length());
+
+			try {
+				id = new URL(id).getPath();
+			}
+			catch (MalformedURLException e) {
+				throw new IllegalArgumentException(e);
+			}
 		}
 
 		if (!id.startsWith(classes.getPath()))
 			throw new IllegalArgumentException();
 
+		// either <id>.jar or <id>/<game>.jar, see getPlayerURL
+		id = id.substring(classes.getPath().length());
+		id = id.indexOf("/") < 0 ? id.substring(0, id.length() - 4) : id.substring(0, id.indexOf("/"));
+
 		try {
-			return id.substring(classes.getPath().length());
+			return Integer.valueOf(id).toString();
 		}
 		catch (NumberFormatException e) {
 			throw new IllegalArgumentException(e);
@@ -0,0 +1,26 @@
+package uno.cod;
+
+/**
+ * Thrown if a thread allocated more heap memory than it was allowed to.
+ * It is a special kind of timeout, so that callers handling
+ * {@link CodunoTimeoutException} treat exhausting both budgets alike.
+ */
+public class CodunoAllocationException extends CodunoTimeoutException {
+	private static final long serialVersionUID = 1L;
+
+	public CodunoAllocationException() {
+		super();
+	}
+
+	public CodunoAllocationException(String message) {
+		super(message);
+	}
+	
+	public CodunoAllocationException(String message, Throwable cause) {
+		super(message, cause);
+	}
+	
+	public CodunoAllocationException(Throwable cause) {
+		super(cause);
+	}
+}
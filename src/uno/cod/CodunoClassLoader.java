@@ -1,5 +1,7 @@
 package uno.cod;
 
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.InputStream;
 import java.io.IOException;
 import java.net.URL;
@@ -27,8 +29,24 @@ import java.security.Principal;
  * A {@link ClassLoader} that can be used to load multiple implementations of the same class.
  */
 public class CodunoClassLoader extends URLClassLoader {
+	static {
+		registerAsParallelCapable();
+	}
+
 	private final ClassLoader parent;
 
+	/**
+	 * Prefix for keys of this jar's entries in {@link ClassCache}, or
+	 * <code>null</code> if they are not cached.
+	 */
+	private final String cacheKey;
+
+	/**
+	 * Whether classes are rewritten by {@link Meter} before they are
+	 * defined.
+	 */
+	private final boolean metered;
+
 	/**
 	 * Initializes a new CodunoClassLoader pointing at a specific jar file.
 	 *
@@ -44,18 +62,34 @@ public class CodunoClassLoader extends URLClassLoader {
 	 * @param url points this to the jar file, to load the classes from.
 	 */		
 	public CodunoClassLoader(URL url, ClassLoader parent) {
+		this(url, parent, false);
+	}
+
+	/**
+	 * @param metered whether to rewrite classes via {@link Meter}, so they
+	 *                count the instructions they execute and can be
+	 *                cancelled. Used for player code with
+	 *                <code>--meter</code> or <code>--bytecode-sandbox</code>.
+	 */
+	public CodunoClassLoader(URL url, ClassLoader parent, boolean metered) {
 		super(new URL[] { url }, parent);
 				
 		if (!url.getProtocol().equals("jar"))
 			throw new IllegalArgumentException("Please specify a jar URL (protocol mismatch)");
 
+		String key = getCacheKey(url);
+
 		this.parent = parent;
+		this.metered = metered;
+		this.cacheKey = key != null && metered ? "metered:" + key : key;
 	}
 	
 	public CodunoClassLoader() {
-		super(null, null);
+		super(new URL[0], null);
 		
 		parent = null;
+		cacheKey = null;
+		metered = false;
 	}
 	
 	public CodunoClassLoader(URL url) {
@@ -63,27 +97,120 @@ public class CodunoClassLoader extends URLClassLoader {
 	}
 
 	/**
-	 * Loads a class, regardless if it has already been loaded or not. Resulting
-	 * duplicates are used to execute multiple implementations of the same
-	 * class concurrently.
+	 * Loads a class from the jar file this ClassLoader points at, before
+	 * asking the parent. Each class is defined at most once per
+	 * CodunoClassLoader and classes of different names may be loaded
+	 * concurrently. To execute multiple implementations of the same class
+	 * concurrently, load the class again with a new CodunoClassLoader for
+	 * the same jar, as {@link SolutionPool} does.
 	 * 
 	 * @param name Fully qualified name of the class to be loaded. Example:
 	 *             <code>examplepkg.utils.FooBar</code>
 	 */
 	@Override
 	public Class<?> loadClass(String name) throws ClassNotFoundException {
+		synchronized (getClassLoadingLock(name)) {
+			Class<?> result = findLoadedClass(name);
+
+			if (result != null)
+				return result;
+
+			try {
+				long start = System.nanoTime();
+				ClassCache.Entry entry = find(name);
+
+				if (entry.bytes == null)
+					return super.loadClass(name);
+
+				result = defineClass(name, entry.bytes, 0, entry.bytes.length, new ProtectionDomain(new CodeSource(getURLs()[0], entry.certificates), new Permissions()));
+				Metrics.defined(System.nanoTime() - start);
+				return result;
+			}
+			catch (IOException|NullPointerException|SecurityException e) {
+				return super.loadClass(name);
+			}
+		}
+	}
+
+	/**
+	 * Looks up the class file for <code>name</code>, preferably from
+	 * {@link ClassCache}, and reads it from the jar file otherwise. Class
+	 * files of metered loaders are cached after being verified and
+	 * rewritten, so classes rejected by {@link Sandbox} are read again.
+	 */
+	private ClassCache.Entry find(String name) throws IOException {
+		String key = cacheKey == null ? null : cacheKey + name;
+		ClassCache.Entry result = key == null ? null : ClassCache.get(key);
+
+		if (result != null)
+			return result;
+
+		JarURLConnection connection = (JarURLConnection)getURLs()[0].openConnection();
+		JarFile file = connection.getJarFile();
+		JarEntry entry = file.getJarEntry(name.replace(".", "/") + ".class");
+
+		if (entry == null)
+			result = new ClassCache.Entry(null, null);
+		else if (metered)
+			result = new ClassCache.Entry(Meter.instrument(verify(read(file, entry))), entry.getCertificates());
+		else
+			result = new ClassCache.Entry(read(file, entry), entry.getCertificates());
+
+		// misses are cheap to look up again, as the jar file stays open
+		if (key != null && result.bytes != null)
+			ClassCache.put(key, result);
+
+		return result;
+	}
+
+	/**
+	 * @throws SecurityException if <code>--bytecode-sandbox</code> is
+	 *                           enabled and the class must not be defined.
+	 */
+	private byte[] verify(byte[] bytes) throws SecurityException {
+		if (Sandbox.isEnabled())
+			Sandbox.verify(bytes, getURLs()[0]);
+
+		return bytes;
+	}
+
+	/**
+	 * Classes of metered loaders are only ever defined by
+	 * {@link #loadClass(String)}, so none escapes instrumentation or
+	 * {@link Sandbox} by falling back to {@link URLClassLoader}.
+	 */
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		if (metered)
+			throw new ClassNotFoundException(name);
+
+		return super.findClass(name);
+	}
+
+	/**
+	 * Identifies the exact version of a jar file by the SHA-256 hash of its
+	 * contents, so a jar rewritten in place never yields stale bytes. Only
+	 * local jar files are cached. This is done once per ClassLoader, while
+	 * constructing it, so it never happens on behalf of player code, and
+	 * the hash is memoized per file (see {@link ResultCache#digest(File)}).
+	 *
+	 * @return a prefix for keys in {@link ClassCache}, or <code>null</code>
+	 *         if class files of this jar may not be cached.
+	 */
+	private static String getCacheKey(URL url) {
 		try {
-			JarURLConnection connection = (JarURLConnection)getURLs()[0].openConnection();
-			JarFile file = connection.getJarFile();
-			JarEntry entry = file.getJarEntry(name.replace(".", "/") + ".class");
-			byte[] bytes = read(file, entry);
-			return defineClass(name, bytes, 0, bytes.length, new ProtectionDomain(new CodeSource(getURLs()[0], entry.getCertificates()), new Permissions()));
+			File file = ResultCache.toFile(url);
+
+			if (file == null)
+				return null;
+
+			return ResultCache.toHex(ResultCache.digest(file)) + "!/";
 		}
-		catch (IOException|NullPointerException|SecurityException e) {
-			return super.loadClass(name);
+		catch (IOException e) {
+			return null;
 		}
 	}
-	
+
 /*	public Class<?> loadClass(URL url) throws ClassNotFoundException {
 		if (!url.getPath().endsWith(".jar"))
 			throw new IllegalArgumentException("Please specify a jar URL (protocol mismatch)");
@@ -107,11 +234,30 @@ public class CodunoClassLoader extends URLClassLoader {
 	}
 	
 	protected byte[] read(JarFile file, JarEntry entry) throws IOException {
-		byte[] bytes = new byte[(int)entry.getSize()];
-		InputStream stream = file.getInputStream(entry);
-		stream.read(bytes);
-		stream.close();
-		return bytes;
+		try (InputStream stream = file.getInputStream(entry)) {
+			if (entry.getSize() < 0) {
+				ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+				byte[] chunk = new byte[4096];
+				int count;
+
+				while ((count = stream.read(chunk)) >= 0)
+					buffer.write(chunk, 0, count);
+
+				return buffer.toByteArray();
+			}
+
+			byte[] bytes = new byte[(int)entry.getSize()];
+			int offset = 0, count;
+
+			// a single read may return less than requested
+			while (offset < bytes.length && (count = stream.read(bytes, offset, bytes.length - offset)) >= 0)
+				offset += count;
+
+			if (offset < bytes.length)
+				throw new EOFException("Unexpected end of " + entry.getName() + " after " + offset + " of " + bytes.length + " bytes");
+
+			return bytes;
+		}
 	}
 
 	/**
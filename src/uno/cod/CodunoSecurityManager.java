@@ -3,98 +3,153 @@ package uno.cod;
 import java.io.File;
 import java.io.FileDescriptor;
 import java.net.InetAddress;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.security.Permission;
-import java.util.Arrays;
-import java.util.List;
-import java.util.logging.Logger;
-import java.security.ProtectionDomain;
 import java.security.CodeSource;
-import java.security.ProtectionDomain;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import static java.util.logging.Level.FINE;
+import java.util.logging.Logger;
 
 /**
- * A custom SecurityManager that watches implementations of
- * {@link uno.cod.Coduno#getInterface()}.
+ * A custom SecurityManager that watches classes loaded from the jar files of
+ * players, that is everything below <code>--player-classpath</code>.
+ *
+ * Whether a class is trusted is decided once per class and code source, so
+ * checks on behalf of the game and the JDK only cost a walk over the stack.
+ * The overrides of the specific <code>check*</code> methods do not call
+ * their counterparts in {@link SecurityManager}, as those would only end
+ * up in {@link #checkPermission(Permission)} and walk the stack again.
  */
-@SuppressWarnings("unchecked") // Class.isAssignableFrom(Class<?>) calls are unchecked
 class CodunoSecurityManager extends SecurityManager {
 	private final String path;
 
+	/**
+	 * Path of {@link #path}, compared against the path of jar files classes
+	 * are loaded from.
+	 */
+	private final String root;
+
+	/**
+	 * Decisions by location of code source, <code>true</code> for player
+	 * code.
+	 */
+	private final ConcurrentMap<String, Boolean> sources = new ConcurrentHashMap<>();
+
+	/**
+	 * Decisions by class, <code>true</code> for player code. Classes of the
+	 * JDK, Coduno and the game are trusted.
+	 */
+	private final ClassValue<Boolean> untrusted = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			// Class.getProtectionDomain() would ask this SecurityManager for
+			// permission, so the location is taken from the ClassLoader.
+			ClassLoader loader = type.getClassLoader();
+
+			if (!(loader instanceof CodunoClassLoader) || loader == Coduno.getGameLoader())
+				return false;
+
+			URL[] urls = ((CodunoClassLoader)loader).getURLs();
+			return urls.length == 0 || isPlayerCode(urls[0]);
+		}
+	};
+
 	public CodunoSecurityManager(String path) {
 		this.path = path;
+
+		try {
+			this.root = new URL(path).getPath();
+		}
+		catch (MalformedURLException e) {
+			throw new IllegalArgumentException(e);
+		}
 	}
 
 	@Override
 	public void checkPermission(Permission perm) {
-		if (perm.getClass().equals(java.io.FilePermission.class)) {
-			Class[] context = getClassContext();
-		
-			// CodunoClassLoader is run from evil classes, but it's trusted
-			// (needed for dependency resolution)
-			for (int i = 1; i < context.length; i++)
-				if (context[i] == CodunoClassLoader.class || context[i] == ClassLoader.class)
-					return;
-		}
-		checkOrigin(perm.toString());
+		Class<?> origin = getOrigin(perm.getClass() == java.io.FilePermission.class);
+
+		if (origin != null)
+			deny(origin, perm.getClass().getSimpleName(), perm.toString());
 	}
 
 	@Override
 	public void checkAccept(String host, int port) {
-		checkOrigin("ServerSocket.accept(\"" + host + "\", " + port + ")");
-		super.checkAccept(host, port);
+		Class<?> origin = getOrigin(false);
+
+		if (origin != null)
+			deny(origin, "checkAccept", "ServerSocket.accept(\"" + host + "\", " + port + ")");
 	}
 
 	@Override
 	public void checkAccess(Thread t) {
-		checkOrigin("Thread access to " +  t.toString());
-		super.checkAccess(t);
+		Class<?> origin = getOrigin(false);
+
+		if (origin != null)
+			deny(origin, "checkAccess", "Thread access to " +  t.toString());
 	}
 
 	@Override
 	public void checkAccess(ThreadGroup g) {
-		checkOrigin("ThreadGroup access to " + g.toString());
-		super.checkAccess(g);
+		Class<?> origin = getOrigin(false);
+
+		if (origin != null)
+			deny(origin, "checkAccess", "ThreadGroup access to " + g.toString());
 	}
 
 	@Override
 	public void checkConnect(String host, int port) {
-		checkOrigin("Socket.connect(\"" + host + "\", " + port + ")");
-		super.checkConnect(host, port);
+		Class<?> origin = getOrigin(false);
+
+		if (origin != null)
+			deny(origin, "checkConnect", "Socket.connect(\"" + host + "\", " + port + ")");
 	}
 
 	@Override
 	public void checkConnect(String host, int port, Object context) {
-		checkOrigin("Socket.connect(\"" + host + "\", " + port + ") in context " + context.toString());
+		Class<?> origin = getOrigin(false);
+
+		if (origin != null)
+			deny(origin, "checkConnect", "Socket.connect(\"" + host + "\", " + port + ") in context " + context.toString());
+
 		super.checkConnect(host, port, context);
 	}
 
 	@Override
 	public void checkCreateClassLoader() {
-		checkOrigin("Create ClassLoader");
-		super.checkCreateClassLoader();
+		Class<?> origin = getOrigin(false);
+
+		if (origin != null)
+			deny(origin, "checkCreateClassLoader", "Create ClassLoader");
 	}
 
 	@Override
 	public void checkDelete(String file) {
-		if (new File(file).getAbsolutePath().startsWith("/tmp/"))
+		Class<?> origin = getOrigin(false);
+
+		if (origin == null || new File(file).getAbsolutePath().startsWith("/tmp/"))
 			return;
 
-		checkOrigin("File.delete(\"" + file + "\")");
-		super.checkDelete(file);
+		deny(origin, "checkDelete", "File.delete(\"" + file + "\")");
 	}
 
 	@Override
 	public void checkExec(String cmd) {
-		checkOrigin("Runtime.exec(\"" + cmd + "\")");
-		super.checkExec(cmd);
+		Class<?> origin = getOrigin(false);
+
+		if (origin != null)
+			deny(origin, "checkExec", "Runtime.exec(\"" + cmd + "\")");
 	}
 
 	@Override
 	public void checkExit(int status) {
-		checkOrigin("System.exit(" + status + ")");
-		super.checkExit(status);
+		Class<?> origin = getOrigin(false);
+
+		if (origin != null)
+			deny(origin, "checkExit", "System.exit(" + status + ")");
 	}
 
 	@Override
@@ -106,26 +161,34 @@ class CodunoSecurityManager extends SecurityManager {
 
 	@Override
 	public void checkListen(int port) {
-		checkOrigin("Listen to port " + port);
-		super.checkListen(port);
+		Class<?> origin = getOrigin(false);
+
+		if (origin != null)
+			deny(origin, "checkListen", "Listen to port " + port);
 	}
 
 	@Override
 	public void checkMulticast(InetAddress maddr) {
-		checkOrigin("Multicast at " + maddr.toString());
-		super.checkMulticast(maddr);	
+		Class<?> origin = getOrigin(false);
+
+		if (origin != null)
+			deny(origin, "checkMulticast", "Multicast at " + maddr.toString());
 	}
 
 	@Override
 	public void checkPrintJobAccess() {
-		checkOrigin("Print");
-		super.checkPrintJobAccess();
+		Class<?> origin = getOrigin(false);
+
+		if (origin != null)
+			deny(origin, "checkPrintJobAccess", "Print");
 	}
 
 	@Override
 	public void checkPropertiesAccess() {
-		checkOrigin("System.set/getProperties()");
-		super.checkPropertiesAccess();
+		Class<?> origin = getOrigin(false);
+
+		if (origin != null)
+			deny(origin, "checkPropertiesAccess", "System.set/getProperties()");
 	}
 
 	@Override
@@ -142,25 +205,34 @@ class CodunoSecurityManager extends SecurityManager {
 			case "user.country":
 			return;
 		}
-		checkOrigin("System.getProperty(" + key + ")");
-		super.checkPropertyAccess(key);
+
+		Class<?> origin = getOrigin(false);
+
+		if (origin != null)
+			deny(origin, "checkPropertyAccess", "System.getProperty(" + key + ")");
 	}
 
 	@Override
 	public void checkRead(FileDescriptor fd) {
-		checkOrigin("Write from FileDescriptor " + fd.toString());
-		super.checkRead(fd);
+		Class<?> origin = getOrigin(false);
+
+		if (origin != null)
+			deny(origin, "checkRead", "Write from FileDescriptor " + fd.toString());
 	}
 
 	@Override
 	public void checkRead(String filename) {
+		Class<?> origin = getOrigin(false);
+
+		if (origin == null)
+			return;
+
 		filename = new File(filename).getAbsolutePath();
-		
+
 		if (filename.substring(0, filename.lastIndexOf("/") + 1).equals("/tmp/"))
 			return;
 
-		checkOrigin("Read from file \"" + filename + "\""); 
-		super.checkRead(filename);
+		deny(origin, "checkRead", "Read from file \"" + filename + "\"");
 	}
 
 	@Override
@@ -170,55 +242,152 @@ class CodunoSecurityManager extends SecurityManager {
 
 	@Override
 	public void checkSetFactory() {
-		checkOrigin("Set Factory");
-		throw new SecurityException("Setting Factories is forbidden.");
-	}
+		Class<?> origin = getOrigin(false);
 
-	@Override
-	public void checkSystemClipboardAccess() {
-		checkOrigin("SystemClipboard access");
-		throw new SecurityException("Accessing the clipboard is forbidden.");
+		if (origin != null)
+			deny(origin, "checkSetFactory", "Set Factory");
+
+		throw new SecurityException("Setting Factories is forbidden.");
 	}
 
 	@Override
 	public void checkWrite(FileDescriptor fd) {
-		checkOrigin("Write to FileDescriptor " + fd.toString());
-		super.checkWrite(fd);
+		Class<?> origin = getOrigin(false);
+
+		if (origin != null)
+			deny(origin, "checkWrite", "Write to FileDescriptor " + fd.toString());
 	}
 
 	@Override
 	public void checkWrite(String filename) {
+		Class<?> origin = getOrigin(false);
+
+		if (origin == null)
+			return;
+
 		filename = new File(filename).getAbsolutePath();
-	
+
 		if (filename.substring(0, filename.lastIndexOf("/") + 1).equals("/tmp/"))
 			return;
 
-		checkOrigin("Write to file \"" + filename + "\"");
-		super.checkWrite(filename);
+		deny(origin, "checkWrite", "Write to file \"" + filename + "\"");
+	}
+
+	/**
+	 * Checks whether a jar file lies below {@link #path}.
+	 */
+	private boolean isPlayerCode(URL location) {
+		String key = location.toString();
+		Boolean result = sources.get(key);
+
+		if (result != null)
+			return result;
+
+		String file = key;
+
+		if (file.startsWith("jar:"))
+			file = file.substring(4, file.contains("!/") ? file.indexOf("!/") : file.length());
+
+		try {
+			result = new URL(file).getPath().startsWith(root);
+		}
+		catch (MalformedURLException e) {
+			// better safe than sorry
+			result = true;
+		}
+
+		sources.putIfAbsent(key, result);
+		return result;
 	}
 
-	@SuppressWarnings("deprecation")
-	private void checkOrigin(final String type) throws SecurityException {
-		Class[] context = getClassContext();
+	/**
+	 * Looks for player code on the stack of the current thread. Must be
+	 * called directly by the <code>check*</code> method.
+	 *
+	 * The search stops at frames of this SecurityManager (checks caused
+	 * by this SecurityManager itself) and of {@link ClassLoader}. If
+	 * <code>file</code> is set, frames of {@link CodunoClassLoader} are
+	 * trusted as well, even if it is run from evil classes (needed for
+	 * dependency resolution).
+	 *
+	 * Checks are only counted and timed per match (see
+	 * {@link Match#getSecurityTime()}) while the log level is
+	 * <code>FINE</code> or finer, as that costs more than most checks.
+	 *
+	 * @return the class of the first frame that belongs to player code,
+	 *         or <code>null</code> if there is none.
+	 */
+	private Class<?> getOrigin(boolean file) {
+		if (!Logger.getGlobal().isLoggable(FINE))
+			return findOrigin(getClassContext(), file);
+
+		long start = System.nanoTime();
+
+		try {
+			return findOrigin(getClassContext(), file);
+		}
+		finally {
+			Match match = Match.current();
+
+			if (match != null)
+				match.account(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * @param context as returned by {@link #getClassContext()} when called
+	 *                from {@link #getOrigin(boolean)}.
+	 */
+	private Class<?> findOrigin(Class<?>[] context, boolean file) {
+		if (file)
+			for (int i = 1; i < context.length; i++)
+				if (context[i] == CodunoClassLoader.class || context[i] == ClassLoader.class)
+					return null;
+
 		for (int i = 2; i < context.length; i++) {
 			if (context[i] == this.getClass() || context[i] == ClassLoader.class)
-				return;
-
-			if (Coduno.getInterface().isAssignableFrom(context[i])) {
-				CodeSource cs = context[i].getProtectionDomain().getCodeSource();
-				System.out.print("SECURITY: " + type + " from source " + cs.getLocation());
-				
-				if (cs.getCertificates() != null)
-					System.out.print(" issued by {" + ((X509Certificate)cs.getCertificates()[0]).getIssuerDN() + "}");
-
-				System.out.println();
-
-				final StackTraceElement[] trace = Thread.currentThread().getStackTrace();
-				for (int j = 0; j < trace.length; j++) System.out.println("\tat " + trace[j]);
-				
-				//Thread.currentThread().stop();
-				throw new SecurityException(type);
-			}
+				return null;
+
+			if (untrusted.get(context[i]))
+				return context[i];
 		}
+
+		return null;
+	}
+
+	/**
+	 * Reports the violation to the {@link AuditLog} and throws. Formatting
+	 * and writing the report is left to the thread of the audit log, so
+	 * players that cause many violations do not keep others waiting for
+	 * <code>System.out</code>.
+	 *
+	 * @param check counts the violation in {@link MetricsMXBean#getDenials()}.
+	 */
+	private void deny(Class<?> origin, String check, final String type) throws SecurityException {
+		StackTraceElement[] trace = new Throwable().getStackTrace();
+		Metrics.deny(check);
+
+		CodeSource cs = origin.getProtectionDomain().getCodeSource();
+		String player;
+
+		try {
+			player = Coduno.resolve(cs.getLocation());
+		}
+		catch (IllegalArgumentException e) {
+			player = "?";
+		}
+
+		Match match = Match.current();
+
+		if (match != null)
+			match.deny(player);
+
+		String issuer = null;
+
+		if (cs.getCertificates() != null)
+			issuer = ((X509Certificate)cs.getCertificates()[0]).getIssuerX500Principal().toString();
+
+		AuditLog.record(new AuditLog.Violation(player, cs.getLocation().toString(), issuer, type, AuditLog.top(trace)));
+		throw new SecurityException(type);
 	}
 }
@@ -0,0 +1,19 @@
+package uno.cod;
+
+/**
+ * Thrown in a thread running player code at a cancellation point (see
+ * {@link Meter}) once the thread exceeded its budget, instead of stopping
+ * the thread via {@link Thread#stop()}. Like {@link ThreadDeath}, it is not
+ * reported as an uncaught exception.
+ */
+public class CodunoTerminationError extends Error {
+	private static final long serialVersionUID = 1L;
+
+	public CodunoTerminationError() {
+		super();
+	}
+
+	public CodunoTerminationError(String message) {
+		super(message);
+	}
+}
@@ -1,15 +1,34 @@
 package uno.cod;
 
 import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import static java.lang.Thread.State.*;
+import static java.util.logging.Level.FINE;
+import java.util.logging.Logger;
 
 /** 
  * A simple Thread with some additional functionality to store a timeout and
  * check how much time is left during execution.
  */
 public class CodunoThread extends Thread {
+	private static final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
 	private final long timeout;
-	private long time = 0;
+	private volatile long base = 0;
+	private volatile long budget = 0;
+	private volatile long remaining = Long.MAX_VALUE;
+	private volatile long time = 0;
+	private long allocationLimit = 0;
+	private volatile long allocated = 0;
+	private long instructionLimit = 0;
+	private long instructions = 0;
+	private volatile boolean cancelled = false;
+	private final CompletableFuture<Long> result = new CompletableFuture<>();
+	private volatile CompletableFuture<Long> current = result;
+	// current until the thread finished it or the Watchdog expired it
+	private final AtomicReference<CompletableFuture<Long>> pending = new AtomicReference<>(result);
 	
 	public long getCurrentTime() {
 		if (super.getState() == NEW)
@@ -17,23 +36,267 @@ public class CodunoThread extends Thread {
 		else if (super.getState() == TERMINATED)
 			return getTotalTime();
 		else
-			return ManagementFactory.getThreadMXBean().getThreadCpuTime(getId());
+			return bean.getThreadCpuTime(getId());
 	}
 
 	public long getTotalTime() {		
 		return time;
 	}
 	
+	/**
+	 * Returns the CPU time left for the current run or task [ns], measured
+	 * right now. Asking the current thread is cheaper than asking another
+	 * one, but still costs a system call, see
+	 * {@link #getCoarseRemainingTime()}.
+	 */
 	public long getRemainingTime() {
-		if (timeout <= 0)
+		if (instructionLimit > 0)
+			return Meter.toNanos(Math.max(0, instructionLimit - instructions));
+
+		long budget = this.budget > 0 ? this.budget : timeout;
+
+		if (budget <= 0)
 			return Long.MAX_VALUE;
-	
-		return getTimeout() - getCurrentTime();
+
+		return budget - ((Thread.currentThread() == this ? bean.getCurrentThreadCpuTime() : getCurrentTime()) - base);
+	}
+
+	/**
+	 * Returns the CPU time left for the current run or task [ns] as last
+	 * sampled by the {@link Watchdog}, so it may be up to one tick (see
+	 * <code>--watchdog-tick</code>) too optimistic. Only reads a volatile
+	 * field, so it may be called as often as needed.
+	 */
+	public long getCoarseRemainingTime() {
+		if (instructionLimit > 0)
+			return Meter.toNanos(Math.max(0, instructionLimit - instructions));
+
+		return remaining;
+	}
+
+	/**
+	 * Sets the budget of the run or task this thread is about to start
+	 * with, called before the thread is started or by the thread itself.
+	 *
+	 * @param base CPU time the thread used before [ns].
+	 * @param budget CPU time it may use on top of <code>base</code> [ns],
+	 *               not limited if not positive.
+	 */
+	void setBudget(long base, long budget) {
+		this.base = base;
+		this.budget = budget;
+		this.remaining = budget > 0 ? budget : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Called by the {@link Watchdog} with every sample.
+	 */
+	void setRemainingTime(long remaining) {
+		this.remaining = remaining;
 	}
 	
 	public long getTimeout() {
 		return timeout;
 	}
+
+	/**
+	 * Returns the number of bytes this thread allocated on the heap so far,
+	 * or <code>-1</code> if the JVM does not support measuring it.
+	 */
+	public long getCurrentAllocatedBytes() {
+		if (super.getState() == NEW)
+			return 0;
+		else if (super.getState() == TERMINATED)
+			return getTotalAllocatedBytes();
+		else
+			return getAllocatedBytes(getId());
+	}
+
+	/**
+	 * Returns the number of bytes this thread allocated on the heap, once
+	 * it terminated.
+	 */
+	public long getTotalAllocatedBytes() {
+		return allocated;
+	}
+
+	/**
+	 * Returns the number of bytes this thread may allocate on the heap
+	 * before it is stopped, not limited if not positive.
+	 */
+	public long getAllocationLimit() {
+		return allocationLimit;
+	}
+
+	/**
+	 * Limits the number of bytes this thread may allocate on the heap.
+	 * Enforced by the {@link Watchdog}, so the thread may exceed the limit
+	 * by what it allocates within one tick.
+	 *
+	 * @throws IllegalThreadStateException if this thread was already
+	 *                                     started.
+	 */
+	public void setAllocationLimit(long bytes) {
+		if (super.getState() != NEW)
+			throw new IllegalThreadStateException();
+
+		allocationLimit = bytes;
+	}
+
+	/**
+	 * Returns the number of instructions this thread executed in metered
+	 * player code since the budget was last set, see {@link Meter}.
+	 */
+	public long getInstructions() {
+		return instructions;
+	}
+
+	/**
+	 * Sets the number of instructions this thread may execute in metered
+	 * player code before it is stopped, and resets the count. Not limited
+	 * if not positive. Called before the thread is started, or by the
+	 * thread itself for every task of a {@link CodunoWorker}.
+	 */
+	void setInstructionLimit(long instructions) {
+		this.instructionLimit = instructions;
+		this.instructions = 0;
+	}
+
+	/**
+	 * Charges instructions to this thread, only called by the thread
+	 * itself via {@link Meter#tick(int)}. If the budget is exceeded, the
+	 * current result is failed (see {@link #fail}) and a
+	 * {@link CodunoTerminationError} is thrown. As player code might catch
+	 * that, every further tick throws again and the thread does not move
+	 * on to another task, see {@link #awaitTermination()}. The same
+	 * happens at every tick after {@link #terminate()}.
+	 */
+	void tick(int cost) {
+		if (cancelled)
+			throw new CodunoTerminationError("Thread " + getName() + " was cancelled.");
+
+		instructions += cost;
+
+		if (instructionLimit <= 0 || instructions <= instructionLimit)
+			return;
+
+		String message = "Thread " + getName() + " exceeded its budget of " + instructionLimit + " instructions.";
+		fail(current, new CodunoTimeoutException(message));
+		cancelled = true;
+		throw new CodunoTerminationError(message);
+	}
+
+	/**
+	 * Returns the number of bytes the thread with the given ID allocated,
+	 * or <code>-1</code> if the JVM does not support measuring it.
+	 */
+	static long getAllocatedBytes(long id) {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(id);
+
+		return -1;
+	}
+
+	/**
+	 * Completes with the CPU time this thread used as soon as it
+	 * terminates, or with a {@link CodunoTimeoutException} if it was
+	 * stopped for exceeding its timeout (or a
+	 * {@link CodunoAllocationException} for exceeding its allocation
+	 * limit).
+	 *
+	 * @see uno.cod.Watchdog
+	 */
+	public CompletableFuture<Long> getResult() {
+		return result;
+	}
+
+	/**
+	 * Returns the result of what this thread is working on right now, that
+	 * is {@link #getResult()} or the result of the task of a
+	 * {@link CodunoWorker}.
+	 */
+	CompletableFuture<Long> getCurrentResult() {
+		return current;
+	}
+
+	void setCurrentResult(CompletableFuture<Long> current) {
+		this.current = current;
+		this.pending.set(current);
+	}
+
+	/**
+	 * Called by the thread itself once it is done with the task that
+	 * should complete <code>result</code>, before moving on.
+	 *
+	 * @return <code>false</code> if the task was expired in the meantime,
+	 *         in which case the thread is about to be terminated and must
+	 *         not move on, see {@link #awaitTermination()}.
+	 */
+	boolean finish(CompletableFuture<Long> result) {
+		return pending.compareAndSet(result, null);
+	}
+
+	/**
+	 * Called by the thread itself after {@link #finish} failed. Waits for
+	 * the termination that is on its way and never returns normally.
+	 */
+	void awaitTermination() {
+		if (Sandbox.isEnabled() || cancelled)
+			throw new CodunoTerminationError("Thread " + getName() + " was cancelled.");
+
+		while (true)
+			LockSupport.parkNanos(this, 1000000);
+	}
+
+	/**
+	 * Stops this thread because the run that should complete
+	 * <code>result</code> used more CPU time or memory than it was allowed
+	 * to. Does nothing if the thread already finished that run, so a
+	 * late decision never hits the next task of a {@link CodunoWorker}.
+	 */
+	void expire(CompletableFuture<Long> result, CodunoTimeoutException reason) {
+		if (fail(result, reason))
+			terminate();
+	}
+
+	/**
+	 * Completes <code>result</code> with <code>reason</code>, unless the
+	 * thread already finished that run or it failed before.
+	 *
+	 * @return whether it did, in which case the thread must not move on.
+	 */
+	boolean fail(CompletableFuture<Long> result, CodunoTimeoutException reason) {
+		if (!pending.compareAndSet(result, null))
+			return false;
+
+		if (result.completeExceptionally(reason))
+			Metrics.timeout();
+
+		return true;
+	}
+
+	/**
+	 * Ends whatever this thread is running. Stops the thread, unless
+	 * <code>--bytecode-sandbox</code> is enabled: then the thread throws a
+	 * {@link CodunoTerminationError} at its next cancellation point in
+	 * player code and is interrupted in case it is blocked. A thread that
+	 * runs uninstrumented code, such as the game itself, does not end
+	 * before it calls a player again or returns.
+	 *
+	 * @see uno.cod.Sandbox
+	 */
+	@SuppressWarnings("deprecation")
+	void terminate() {
+		if (!Sandbox.isEnabled()) {
+			stop();
+			return;
+		}
+
+		cancelled = true;
+		interrupt();
+	}
 	
 	public CodunoThread() {
 		super();
@@ -77,7 +340,16 @@ public class CodunoThread extends Thread {
 
 	@Override
 	public void run() {
-		super.run();
-		time = ManagementFactory.getThreadMXBean().getThreadCpuTime(getId());
+		try {
+			super.run();
+		}
+		finally {
+			time = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+			allocated = getAllocatedBytes(getId());
+			result.complete(time);
+
+			if (Logger.getGlobal().isLoggable(FINE))
+				Logger.getGlobal().fine("Thread " + getName() + " ran " + time + "ns CPU-time and allocated " + allocated + " bytes.");
+		}
 	}
 }
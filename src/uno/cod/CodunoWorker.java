@@ -0,0 +1,256 @@
+package uno.cod;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import static java.util.logging.Level.FINE;
+import java.util.logging.Logger;
+
+/**
+ * A long-living {@link CodunoThread} that executes tasks one after another,
+ * each with its own CPU-time budget. Games that call the same player many
+ * times should keep one worker per player instead of calling
+ * {@link Coduno#run} for every turn, so the cost per call is a handoff
+ * through a queue instead of creating and starting a thread.
+ *
+ * The CPU time charged to a task is the difference of the thread's CPU time
+ * before and after running it. If a task exceeds its budget, the thread is
+ * stopped and a new one is started with the next task.
+ *
+ * @author Lorenz Leutgeb
+ */
+public class CodunoWorker implements AutoCloseable {
+	private static final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * Handed to the thread to make it exit.
+	 */
+	private static final Task STOP = new Task(null, null, 0, 0);
+
+	private final String name;
+
+	private final Thread.UncaughtExceptionHandler handler;
+
+	private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+
+	private CodunoThread thread;
+
+	private boolean closed = false;
+
+	private static final class Task {
+		final Solution player;
+
+		final Runnable runnable;
+
+		final long timeout;
+
+		final long instructions;
+
+		final long allocation;
+
+		final CompletableFuture<Long> result = new CompletableFuture<>();
+
+		Task(Solution player, Runnable runnable, long timeout, long allocation) {
+			this.player = player;
+			this.runnable = runnable;
+			this.timeout = Meter.backstop(timeout * 1000000);
+			this.instructions = Meter.budget(timeout);
+			this.allocation = allocation;
+		}
+	}
+
+	/**
+	 * @param name is appended to the names of the threads of this worker,
+	 *             see {@link Coduno#run}.
+	 * @param handler is notified of exceptions thrown by tasks.
+	 */
+	public CodunoWorker(String name, Thread.UncaughtExceptionHandler handler) {
+		this.name = name;
+		this.handler = handler;
+	}
+
+	/**
+	 * Basically the same as {@link #CodunoWorker(String, Thread.UncaughtExceptionHandler)}
+	 * but reports exceptions of tasks to <code>System.err</code>.
+	 */
+	public CodunoWorker(String name) {
+		this(name, Coduno.handler);
+	}
+
+	/**
+	 * Basically the same as {@link #submit(Runnable, long, long)} with the
+	 * allocation limit given via <code>--allocation-limit</code>.
+	 */
+	public CompletableFuture<Long> submit(Runnable runnable, long timeout) {
+		return submit(runnable, timeout, Coduno.getAllocationLimit());
+	}
+
+	/**
+	 * Hands a task to this worker and returns immediately.
+	 *
+	 * @param timeout maximum CPU-time the task is allowed to run for [ms].
+	 * @param allocation maximum number of bytes the task may allocate, not
+	 *                   limited if not positive.
+	 * @return completes with the CPU-time the task used [ns], or with a
+	 *         {@link CodunoTimeoutException} if it was stopped because it
+	 *         ran longer than <code>timeout</code> (a
+	 *         {@link CodunoAllocationException} if it allocated more than
+	 *         <code>allocation</code>).
+	 * @throws IllegalStateException if this worker was closed.
+	 */
+	public CompletableFuture<Long> submit(Runnable runnable, long timeout, long allocation) {
+		return submit(Coduno.player(runnable), runnable, timeout, allocation);
+	}
+
+	/**
+	 * Basically the same as {@link #submit(Runnable, long, long)} but
+	 * charges the CPU time of the task to a player, see
+	 * {@link MetricsMXBean#getPlayerCpuTime()}.
+	 *
+	 * @param player the Solution <code>runnable</code> calls, may be
+	 *               <code>null</code>.
+	 */
+	public synchronized CompletableFuture<Long> submit(Solution player, Runnable runnable, long timeout, long allocation) {
+		if (closed)
+			throw new IllegalStateException("Worker " + name + " was closed");
+
+		Task task = new Task(player, runnable, timeout, allocation);
+
+		// tasks the previous thread did not take before it was stopped are
+		// taken by the new one
+		start();
+		queue.add(task);
+		return task.result;
+	}
+
+	/**
+	 * Runs a task and waits for it to finish.
+	 *
+	 * @param timeout maximum CPU-time the task is allowed to run for [ms].
+	 * @return the CPU-time the task used [ns].
+	 * @throws CodunoTimeoutException if the task attempted to execute
+	 *                                longer than <code>timeout</code>
+	 *                                milliseconds.
+	 */
+	public long run(Runnable runnable, long timeout) throws CodunoTimeoutException {
+		CompletableFuture<Long> result = submit(runnable, timeout);
+
+		try {
+			return result.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 0;
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof CodunoTimeoutException)
+				throw (CodunoTimeoutException)e.getCause();
+
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Lets the thread of this worker exit after all tasks submitted so far.
+	 */
+	@Override
+	public synchronized void close() {
+		if (closed)
+			return;
+
+		closed = true;
+
+		if (thread != null && thread.isAlive())
+			queue.add(STOP);
+	}
+
+	/**
+	 * Starts a new thread, unless there is one already.
+	 */
+	private void start() {
+		if (thread != null && thread.isAlive())
+			return;
+
+		thread = new CodunoThread(new Loop(), "coduno-" + Long.toString(System.nanoTime(), 16) + "-" + name, 0);
+		thread.setUncaughtExceptionHandler(handler);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Executed by the threads of a worker, takes tasks until it is handed
+	 * {@link #STOP} or stopped by the {@link Watchdog}.
+	 */
+	private final class Loop implements Runnable {
+		@Override
+		public void run() {
+			CodunoThread self = (CodunoThread)Thread.currentThread();
+			Task task = null;
+			long base = 0;
+
+			try {
+				while (true) {
+					try {
+						task = queue.take();
+					}
+					catch (InterruptedException e) {
+						return;
+					}
+
+					if (task == STOP)
+						return;
+
+					self.setCurrentResult(task.result);
+					self.setInstructionLimit(task.instructions);
+					base = bean.getCurrentThreadCpuTime();
+					self.setBudget(base, task.timeout);
+					long allocated = CodunoThread.getAllocatedBytes(self.getId());
+					Watchdog.watch(self, task.result, base, task.timeout, allocated, task.allocation);
+
+					try {
+						task.runnable.run();
+					}
+					catch (ThreadDeath|CodunoTerminationError e) {
+						throw e;
+					}
+					catch (Throwable e) {
+						self.getUncaughtExceptionHandler().uncaughtException(self, e);
+					}
+
+					long time = bean.getCurrentThreadCpuTime() - base;
+
+					// lost the race against the watchdog
+					if (!self.finish(task.result))
+						self.awaitTermination();
+
+					Metrics.charge(Match.current(), task.player, time, false);
+					task.result.complete(time);
+					task = null;
+
+					if (Logger.getGlobal().isLoggable(FINE))
+						Logger.getGlobal().fine("Task of " + self.getName() + " ran " + time + "ns CPU-time and allocated " + (CodunoThread.getAllocatedBytes(self.getId()) - allocated) + " bytes.");
+				}
+			}
+			finally {
+				if (task != STOP) {
+					// stopped while working on a task, not while idle
+					if (task != null) {
+						Metrics.charge(Match.current(), task.player, bean.getCurrentThreadCpuTime() - base, true);
+						task.result.completeExceptionally(new CodunoTimeoutException("Thread " + self.getName() + " was stopped."));
+					}
+
+					synchronized (CodunoWorker.this) {
+						if (thread == self)
+							thread = null;
+
+						if (!closed && !queue.isEmpty())
+							start();
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package uno.cod;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps the game jar loaded and the JVM warm while simulating match
+ * requests as they come in, instead of starting a new JVM per match. The
+ * same is used to simulate all matches listed in a file given via
+ * <code>--manifest</code>.
+ *
+ * Requests are read line by line, in the format understood by
+ * {@link Match#parse}. Empty lines and lines starting with <code>#</code>
+ * are ignored. For every request, exactly one line is written back as soon
+ * as the match finished, prefixed with the number of the request (counting
+ * from 1 per connection):
+ *
+ * <pre>
+ * 1 Winner: <i>player</i>
+ * 2 Tie!
+ * 3 Unmodified
+ * 4 Error: <i>message</i>
+ * </pre>
+ *
+ * @author Lorenz Leutgeb
+ */
+public class Daemon {
+	private final ExecutorService executor;
+
+	/**
+	 * @param parallelism maximum number of matches simulated concurrently.
+	 */
+	public Daemon(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be positive");
+
+		this.executor = Executors.newFixedThreadPool(parallelism);
+	}
+
+	/**
+	 * Reads requests from <code>in</code> until it is exhausted and waits
+	 * for all of them to finish.
+	 */
+	public void serve(BufferedReader in, final PrintWriter out) throws IOException {
+		List<Future<?>> pending = new ArrayList<>();
+		String line;
+		int count = 0;
+
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+
+			final int id = ++count;
+			final String request = line;
+			final Match match;
+
+			try {
+				match = Match.parse(line);
+			}
+			catch (IllegalArgumentException e) {
+				respond(out, id, "Error: " + e.getMessage());
+				continue;
+			}
+
+			pending.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					respond(out, id, simulate(request, match));
+				}
+			}));
+		}
+
+		for (Future<?> future : pending) {
+			try {
+				future.get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (ExecutionException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Accepts connections on the loopback interface and serves each of them
+	 * via {@link #serve} until this thread is interrupted.
+	 */
+	public void listen(int port) throws IOException {
+		try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			while (!Thread.currentThread().isInterrupted()) {
+				final Socket socket = server.accept();
+
+				Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							serve(new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8")), new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8")));
+						}
+						catch (IOException e) {
+							e.printStackTrace();
+						}
+						finally {
+							try {
+								socket.close();
+							}
+							catch (IOException e) {}
+						}
+					}
+				}, "coduno-daemon-" + socket.getPort());
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Simulates a single request. Called concurrently by up to
+	 * <code>parallelism</code> threads.
+	 *
+	 * @param request the line the match was parsed from.
+	 * @param match the parsed request.
+	 * @return the response, without the number of the request.
+	 */
+	protected String simulate(String request, Match match) {
+		return simulate(match);
+	}
+
+	static String simulate(Match match) {
+		if (Coduno.getResultCache() == null && !match.isModified())
+			return "Unmodified";
+
+		try {
+			String winner = match.call();
+			return winner == null ? "Tie!" : "Winner: " + winner;
+		}
+		catch (CodunoException|RuntimeException e) {
+			return "Error: " + e.getMessage();
+		}
+	}
+
+	private static void respond(PrintWriter out, int id, String result) {
+		synchronized (out) {
+			out.println(id + " " + result);
+			out.flush();
+		}
+	}
+}
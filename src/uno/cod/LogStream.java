@@ -0,0 +1,187 @@
+package uno.cod;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The stream behind the writer handed to {@link Game#run}. Writes are
+ * collected in large buffers in memory, which are written to the logfile
+ * by a background thread shared by all matches, so games that log a lot do
+ * not spend their <code>--game-timeout</code> on file I/O.
+ *
+ * Every stream owns a fixed number of buffers. If all of them are waiting to
+ * be written, the game blocks until the disk catches up. Errors of the
+ * background thread are thrown by the next call to the stream.
+ */
+final class LogStream extends OutputStream {
+	private static final int SIZE = 1 << 16;
+
+	private static final int BUFFERS = 4;
+
+	private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					// do not keep the match that happened to start the writer
+					Match.detach();
+					runnable.run();
+				}
+			}, "coduno-log");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final FileOutputStream out;
+
+	/**
+	 * Buffers that are not in use, refilled by the background thread.
+	 */
+	private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(BUFFERS);
+
+	private byte[] buffer;
+
+	private int count = 0;
+
+	private volatile IOException error = null;
+
+	private boolean closed = false;
+
+	LogStream(File file) throws FileNotFoundException {
+		this.out = new FileOutputStream(file);
+
+		for (int i = 1; i < BUFFERS; i++)
+			free.add(new byte[SIZE]);
+
+		this.buffer = new byte[SIZE];
+	}
+
+	@Override
+	public synchronized void write(int b) throws IOException {
+		check();
+
+		if (count == buffer.length)
+			handOff();
+
+		buffer[count++] = (byte)b;
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) throws IOException {
+		check();
+
+		while (len > 0) {
+			if (count == buffer.length)
+				handOff();
+
+			int n = Math.min(len, buffer.length - count);
+			System.arraycopy(b, off, buffer, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Hands what was written so far to the background thread, but does not
+	 * wait for it to be written.
+	 */
+	@Override
+	public synchronized void flush() throws IOException {
+		check();
+
+		if (count > 0)
+			handOff();
+	}
+
+	/**
+	 * Writes everything that is left and closes the logfile.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed)
+			return;
+
+		closed = true;
+
+		try {
+			if (count > 0 && error == null)
+				handOff();
+
+			executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					out.close();
+					return null;
+				}
+			}).get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+
+		if (error != null)
+			throw error;
+	}
+
+	private void check() throws IOException {
+		if (closed)
+			throw new IOException("Stream closed");
+
+		if (error != null)
+			throw error;
+	}
+
+	/**
+	 * Queues the current buffer for writing and takes a free one, waiting
+	 * if there is none.
+	 */
+	private void handOff() throws IOException {
+		final byte[] full = buffer;
+		final int length = count;
+
+		buffer = null;
+		count = 0;
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (error == null)
+						out.write(full, 0, length);
+				}
+				catch (IOException e) {
+					error = e;
+				}
+				finally {
+					free.add(full);
+				}
+			}
+		});
+
+		try {
+			buffer = free.take();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+}
@@ -0,0 +1,720 @@
+package uno.cod;
+
+import uno.cod.record.Recorder;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import static java.util.logging.Level.FINE;
+import java.util.logging.Logger;
+
+/**
+ * One simulation of the {@link Game} provided via <code>--game</code>
+ * between a fixed list of players.
+ *
+ * Every match gets a fresh instance of the Game and its own
+ * {@link CodunoClassLoader} per player, so matches running concurrently in
+ * the same JVM do not share static state of player code.
+ *
+ * @author Lorenz Leutgeb
+ */
+public class Match implements Callable<String> {
+	/**
+	 * The match the current thread is working for. Threads started while
+	 * running a match (for example via {@link Coduno#run}) inherit it.
+	 */
+	private static final InheritableThreadLocal<Match> current = new InheritableThreadLocal<>();
+
+	/**
+	 * Loads the players of all matches, see {@link #load()}.
+	 */
+	private static final ExecutorService loaders = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "coduno-loader-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final List<Integer> players;
+
+	private final List<String> args;
+
+	private final File logfile;
+
+	private Game<?> game;
+
+	/**
+	 * Clones of the players' Solutions prepared for
+	 * {@link Coduno#reload(Solution)}, by location of the jar.
+	 */
+	private final Map<String, SolutionPool> pools = new ConcurrentHashMap<>();
+
+	/**
+	 * Number of checks {@link CodunoSecurityManager} did on behalf of this
+	 * match and the time they took [ns], only counted at log level
+	 * <code>FINE</code>.
+	 */
+	private final LongAdder securityChecks = new LongAdder(), securityTime = new LongAdder();
+
+	/**
+	 * CPU time [ns], number of timeouts and number of security violations
+	 * of the players, by player ID.
+	 */
+	private final Map<String, LongAdder> cpu = new ConcurrentHashMap<>(), timeouts = new ConcurrentHashMap<>(), violations = new ConcurrentHashMap<>();
+
+	/**
+	 * IDs of the players by the classes of their Solutions, as resolving
+	 * them is too expensive for every run, see {@link #resolve(Solution)}.
+	 */
+	private final Map<Class<?>, String> ids = new ConcurrentHashMap<>();
+
+	private final String id = UUID.randomUUID().toString();
+
+	private volatile boolean cached = false;
+
+	private final Timings timings = new Timings();
+
+	/**
+	 * Records or replays the calls of the game to the players, or
+	 * <code>null</code>.
+	 */
+	private final Replay calls;
+
+	/**
+	 * @param players IDs of the competing players, in the order they are
+	 *                passed to {@link Game#load}.
+	 * @param args parameters passed to {@link Game#run}.
+	 */
+	public Match(List<Integer> players, List<String> args) {
+		if (players == null || players.isEmpty())
+			throw new IllegalArgumentException("No players given");
+
+		this.players = Collections.unmodifiableList(new ArrayList<>(players));
+		this.args = Collections.unmodifiableList(new ArrayList<>(args));
+		this.logfile = Coduno.getLogFile(this.players);
+		this.calls = Coduno.isRecordCalls() ? Replay.record(this.players, this.args) : null;
+	}
+
+	private Match(Replay replay) {
+		this.players = replay.getPlayers();
+		this.args = replay.getArgs();
+		this.logfile = new File(Coduno.getLogFile(this.players).getPath().replaceFirst("\\.log$", "") + ".replay.log");
+		this.calls = replay;
+	}
+
+	/**
+	 * Creates a match that replays the calls recorded in <code>file</code>
+	 * (see <code>--record-calls</code>) instead of running player code.
+	 * The log is written next to the original one, with the extension
+	 * <code>.replay.log</code>.
+	 *
+	 * @throws CodunoException if <code>file</code> could not be read.
+	 */
+	public static Match replay(File file) throws CodunoException {
+		try {
+			return new Match(Replay.read(file));
+		}
+		catch (IOException e) {
+			throw new CodunoException("Unable to read " + file, e);
+		}
+	}
+
+	/**
+	 * Parses a match request of the form
+	 * <code><i>player</i> <i>player</i> ... [-- <i>arg</i> <i>arg</i> ...]</code>.
+	 *
+	 * @throws IllegalArgumentException if a player ID is no integer or no
+	 *         player is given at all.
+	 */
+	public static Match parse(String line) {
+		List<Integer> players = new ArrayList<>();
+		List<String> args = new ArrayList<>();
+		boolean separated = false;
+
+		for (String token : line.trim().split("\\s+")) {
+			if (token.isEmpty())
+				continue;
+
+			if (separated) {
+				args.add(token);
+			}
+			else if (token.equals("--")) {
+				separated = true;
+			}
+			else {
+				try {
+					players.add(Integer.valueOf(token));
+				}
+				catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Player ID '" + token + "' is no integer", e);
+				}
+			}
+		}
+		return new Match(players, args);
+	}
+
+	/**
+	 * Returns the match the calling thread is working for, or
+	 * <code>null</code> if it does not belong to any match.
+	 */
+	public static Match current() {
+		return current.get();
+	}
+
+	/**
+	 * Makes the calling thread work for <code>match</code>, used by tasks
+	 * running on pooled threads on behalf of a match. Pair with
+	 * {@link #detach()}.
+	 */
+	static void attach(Match match) {
+		if (match == null)
+			current.remove();
+		else
+			current.set(match);
+	}
+
+	/**
+	 * Makes the calling thread no longer belong to any match, used by
+	 * long-living threads that serve all matches.
+	 */
+	static void detach() {
+		current.remove();
+	}
+
+	/**
+	 * Returns an ID that is unique to this match, even among matches of the
+	 * same players.
+	 */
+	public String getId() {
+		return id;
+	}
+
+	public List<Integer> getPlayers() {
+		return players;
+	}
+
+	public List<String> getArgs() {
+		return args;
+	}
+
+	public File getLogFile() {
+		return logfile;
+	}
+
+	/**
+	 * Returns the Game instance of this match, or <code>null</code> if
+	 * it has not been started yet.
+	 */
+	public Game<?> getGame() {
+		return game;
+	}
+
+	/**
+	 * Returns the number of checks {@link CodunoSecurityManager} did for
+	 * threads of this match.
+	 */
+	public long getSecurityChecks() {
+		return securityChecks.sum();
+	}
+
+	/**
+	 * Returns the time {@link CodunoSecurityManager} spent on checks for
+	 * threads of this match [ns].
+	 */
+	public long getSecurityTime() {
+		return securityTime.sum();
+	}
+
+	/**
+	 * Records a check done by {@link CodunoSecurityManager}.
+	 */
+	void account(long nanos) {
+		securityChecks.increment();
+		securityTime.add(nanos);
+	}
+
+	/**
+	 * Returns the CPU time the players used in runs and tasks of this match
+	 * [ns], by player ID. See {@link Metrics} on how runs are attributed to
+	 * players.
+	 */
+	public Map<String, Long> getCpuTime() {
+		return Metrics.snapshot(cpu);
+	}
+
+	/**
+	 * Returns the number of runs and tasks of this match that were stopped
+	 * for exceeding their budget, by player ID.
+	 */
+	public Map<String, Long> getTimeouts() {
+		return Metrics.snapshot(timeouts);
+	}
+
+	/**
+	 * Returns the number of operations {@link CodunoSecurityManager} denied
+	 * to the players of this match, by player ID.
+	 */
+	public Map<String, Long> getViolations() {
+		return Metrics.snapshot(violations);
+	}
+
+	/**
+	 * Records a run or task on behalf of a player.
+	 *
+	 * @param time CPU time it used [ns].
+	 * @param timeout whether it was stopped for exceeding its budget.
+	 */
+	void charge(String player, long time, boolean timeout) {
+		Metrics.add(cpu, player, time);
+
+		if (timeout)
+			Metrics.add(timeouts, player, 1);
+	}
+
+	/**
+	 * Records an operation {@link CodunoSecurityManager} denied to a player.
+	 */
+	void deny(String player) {
+		Metrics.add(violations, player, 1);
+	}
+
+	/**
+	 * Returns whether this match replays recorded calls instead of running
+	 * player code, see {@link #replay(File)}.
+	 */
+	public boolean isReplay() {
+		return calls != null && calls.isReplaying();
+	}
+
+	/**
+	 * Returns how long the phases of this match took.
+	 */
+	Timings getTimings() {
+		return timings;
+	}
+
+	/**
+	 * Returns whether the outcome of this match was taken from the
+	 * <code>--result-cache</code> instead of simulating it.
+	 */
+	public boolean isCached() {
+		return cached;
+	}
+
+	/**
+	 * Checks whether this match has to be simulated, which is the case if
+	 * there is no logfile yet or the game's or one of the player's jar files
+	 * was modified after the logfile was written. Does not consider the
+	 * arguments of the match, see {@link ResultCache} for that.
+	 */
+	public boolean isModified() {
+		if (!logfile.exists())
+			return true;
+
+		try {
+			File game = ResultCache.toFile(Coduno.getGameLoader().getURLs()[0]);
+
+			if (game == null || logfile.lastModified() < game.lastModified())
+				return true;
+
+			for (Integer item : players) {
+				File jar = ResultCache.toFile(Coduno.getPlayerURL(item));
+
+				if (jar == null || logfile.lastModified() < jar.lastModified())
+					return true;
+			}
+		}
+		catch (MalformedURLException e) {
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Loads the game and all players and runs the simulation.
+	 *
+	 * @return the ID of the winning player as resolved by
+	 *         {@link Coduno#resolve}, or <code>null</code> in case of a tie.
+	 * @throws CodunoTimeoutException if the game took longer than
+	 *                                <code>--game-timeout</code>.
+	 * @throws CodunoException if the game or one of the players could not
+	 *                         be loaded.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public String call() throws CodunoException {
+		current.set(this);
+		Metrics.matchStarted();
+		boolean success = false;
+		String outcome = null;
+		Throwable failure = null;
+		Timings.Phase phase;
+
+		try {
+			ResultCache cache = Coduno.getResultCache();
+			String key = null;
+
+			if (cache != null && !isReplay()) {
+				phase = timings.start("cache");
+
+				try {
+					key = cache.key(players, args);
+					ResultCache.Entry entry = key == null ? null : cache.get(key, logfile);
+
+					if (entry != null) {
+						Logger.getGlobal().info(this + ": Outcome taken from cache " + key);
+						cached = true;
+						success = true;
+						outcome = entry.getWinner();
+						return outcome;
+					}
+				}
+				catch (IOException e) {
+					Logger.getGlobal().warning("Unable to read result cache: " + e);
+					key = null;
+				}
+				finally {
+					phase.close();
+				}
+			}
+
+			phase = timings.start("game");
+
+			try {
+				game = Coduno.newGame();
+
+				if (calls != null)
+					Replay.check(game.getClass());
+			}
+			finally {
+				phase.close();
+			}
+
+			Logger.getGlobal().info("Found " + players.size() + " players: " + players);
+
+			if (!logfile.exists())
+				logfile.getParentFile().mkdirs();
+
+			List<Solution> solutions;
+
+			phase = timings.start("load");
+
+			try {
+				if (isReplay()) {
+					solutions = new ArrayList<>();
+
+					for (int i = 0; i < players.size(); i++)
+						solutions.add(calls.replay(i));
+				}
+				else {
+					solutions = load();
+				}
+
+				if (Coduno.isAvoidStatic() && Coduno.getReloadDepth() > 0) {
+					for (Solution solution : solutions) {
+						URL jar = solution.getClass().getProtectionDomain().getCodeSource().getLocation();
+						SolutionPool pool = new SolutionPool(jar, Coduno.getGameLoader(), Coduno.getInterface(), Coduno.getReloadDepth());
+						pools.put(jar.toString(), pool);
+						pool.fill();
+					}
+				}
+
+				if (calls != null && !isReplay())
+					for (int i = 0; i < solutions.size(); i++)
+						solutions.set(i, calls.wrap(solutions.get(i), i));
+			}
+			finally {
+				phase.close();
+			}
+
+			phase = timings.start("setup");
+
+			try {
+				game.load(solutions);
+			}
+			finally {
+				phase.close();
+			}
+
+			// a replay does not run any player code
+			if (!isReplay()) {
+				phase = timings.start("secure");
+
+				try {
+					Coduno.secure();
+				}
+				finally {
+					phase.close();
+				}
+			}
+
+			if (players.size() != game.getPlayerCount())
+				throw new CodunoException("Wrong player count!");
+
+			final Closeable log;
+
+			try {
+				if (game instanceof RecordingGame)
+					log = new Recorder(new LogStream(logfile));
+				else
+					log = new OutputStreamWriter(new LogStream(logfile));
+			}
+			catch (IOException e) {
+				throw new CodunoException(e);
+			}
+
+			phase = timings.start("run");
+			// unless it completes, the game used up its timeout
+			long time = TimeUnit.MILLISECONDS.toNanos(Coduno.getGameTimeout());
+
+			try {
+				time = Coduno.run(game.getClass().getName() + "#run", new Runnable() {
+					@Override
+					public void run() {
+						if (log instanceof Recorder)
+							((RecordingGame<?>)game).run(args, (Recorder)log);
+						else
+							game.run(args, (OutputStreamWriter)log);
+					}
+				}, Coduno.getGameTimeout(), 0, Coduno.handler);
+			}
+			finally {
+				phase.close(time);
+
+				// the rest of the log is written outside of the game's time
+				try {
+					log.close();
+				}
+				catch (IOException e) {
+					Logger.getGlobal().warning("Unable to write " + logfile + ": " + e);
+				}
+
+				if (calls != null && !isReplay()) {
+					try {
+						calls.write(new File(logfile.getPath() + ".calls"));
+					}
+					catch (IOException e) {
+						Logger.getGlobal().warning("Unable to write calls of " + this + ": " + e);
+					}
+				}
+			}
+
+			String result = null;
+
+			phase = timings.start("resolve");
+
+			try {
+				Solution winner = game.getWinner();
+
+				if (winner != null)
+					result = resolve(winner);
+			}
+			catch (IllegalArgumentException e) {
+				throw new CodunoException("Unable to resolve winner " + game.getWinner().getClass().getName(), e);
+			}
+			finally {
+				phase.close();
+			}
+
+			if (key != null) {
+				try {
+					cache.put(key, result, logfile);
+				}
+				catch (IOException e) {
+					Logger.getGlobal().warning("Unable to write result cache: " + e);
+				}
+			}
+
+			success = true;
+			outcome = result;
+			return result;
+		}
+		catch (Throwable e) {
+			failure = e;
+			throw e;
+		}
+		finally {
+			Metrics.matchEnded(success);
+			if (Logger.getGlobal().isLoggable(FINE))
+				Logger.getGlobal().fine(this + ": " + getSecurityChecks() + " security checks took " + getSecurityTime() + "ns");
+
+			for (SolutionPool pool : pools.values())
+				pool.close();
+
+			pools.clear();
+			current.remove();
+
+			if (Coduno.isTimings())
+				System.err.println(Timings.toJson(this, Coduno.getStartupTimings()));
+
+			ResultSink sink = Coduno.getResultSink();
+
+			if (sink != null) {
+				try {
+					sink.write(this, outcome, failure);
+				}
+				catch (IOException e) {
+					Logger.getGlobal().warning("Unable to write result of " + this + ": " + e);
+				}
+			}
+
+			// reports of this match go out before its result
+			AuditLog.flush();
+		}
+	}
+
+	/**
+	 * Gets the ID of the player behind a Solution of this match, which may
+	 * be a recording or replaying proxy.
+	 *
+	 * @throws IllegalArgumentException if <code>solution</code> does not
+	 *         belong to a player.
+	 */
+	String resolve(Solution solution) {
+		Integer index = calls == null ? null : calls.identify(solution);
+
+		if (index != null)
+			return players.get(index).toString();
+
+		String id = ids.get(solution.getClass());
+
+		if (id == null) {
+			id = Coduno.resolve(solution.getClass());
+			ids.put(solution.getClass(), id);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Implements {@link Coduno#reload(Solution)} for Solutions of this match.
+	 */
+	@SuppressWarnings("unchecked")
+	Solution reload(Solution solution) throws CodunoException {
+		Integer index = calls == null ? null : calls.identify(solution);
+
+		if (index != null) {
+			if (isReplay())
+				return calls.replay(index);
+
+			Solution clone = reload(calls.unwrap(solution));
+			return clone == null ? null : calls.wrap(clone, index);
+		}
+
+		URL jar = solution.getClass().getProtectionDomain().getCodeSource().getLocation();
+		SolutionPool pool = pools.get(jar.toString());
+
+		if (pool == null)
+			return SolutionPool.create(jar, Coduno.getGameLoader(), Coduno.getInterface());
+
+		return pool.take();
+	}
+
+	/**
+	 * Instantiates the Solution of every player, each with its own
+	 * {@link CodunoClassLoader}. Players are loaded concurrently; as soon
+	 * as one of them fails, the others are cancelled.
+	 *
+	 * @return the Solutions in the order of {@link #players}.
+	 */
+	private List<Solution> load() throws CodunoException {
+		List<Future<Solution>> futures = new ArrayList<>(players.size());
+		CompletionService<Solution> service = new ExecutorCompletionService<>(loaders);
+
+		for (final Integer item : players) {
+			futures.add(service.submit(new Callable<Solution>() {
+				@Override
+				public Solution call() throws CodunoException {
+					// checks on behalf of the player count for this match
+					current.set(Match.this);
+
+					Timings.Phase phase = timings.start("load:" + item);
+
+					try {
+						return load(item);
+					}
+					finally {
+						phase.close();
+						current.remove();
+					}
+				}
+			}));
+		}
+
+		try {
+			for (int i = 0; i < futures.size(); i++)
+				service.take().get();
+
+			List<Solution> list = new ArrayList<>(players.size());
+
+			for (Future<Solution> future : futures)
+				list.add(future.get());
+
+			return list;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CodunoException("Interrupted while loading players", e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof CodunoException)
+				throw (CodunoException)e.getCause();
+
+			throw new CodunoException("Unable to load players", e.getCause());
+		}
+		finally {
+			for (Future<Solution> future : futures)
+				future.cancel(true);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Solution load(Integer item) throws CodunoException {
+		Class<Solution> face = Coduno.getInterface();
+
+		try {
+			Iterator<Solution> iterator = ServiceLoader.load(face, new CodunoClassLoader(Coduno.getPlayerURL(item), Coduno.getGameLoader(), Meter.isEnabled() || Sandbox.isEnabled())).iterator();
+			Solution solution = iterator.hasNext() ? iterator.next() : null;
+
+			if (solution == null)
+				throw new CodunoException("Unable to load Solution for player " + item + ". Please check " + Coduno.getPlayerClasspath() + item + "/tictactoe.jar!/META-INF/services/" + face.getName());
+
+			return solution;
+		}
+		catch (IOException|SecurityException|ServiceConfigurationError e) {
+			throw new CodunoException("Unable to load Solution for player " + item, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Match" + players + (args.isEmpty() ? "" : " " + args);
+	}
+}
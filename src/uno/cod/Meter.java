@@ -0,0 +1,264 @@
+package uno.cod;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deterministic budgets for player code. If enabled via
+ * <code>--meter</code>, {@link CodunoClassLoader} rewrites the classes of
+ * players as it defines them, so that every method entry and every jump
+ * back to an earlier instruction calls {@link #tick(int)} with the number
+ * of instructions it stands for. A {@link CodunoThread} that exceeds its
+ * budget is stopped just like one that exceeds its CPU time, but the point
+ * where that happens does not depend on how busy the machine is.
+ *
+ * Budgets are derived from the usual timeouts, at <code>--meter</code>
+ * instructions per millisecond. Time spent in the JDK (sorting an array,
+ * for example) is not counted, so CPU time is still watched as a backstop,
+ * but with {@link #BACKSTOP} times the timeout.
+ */
+public final class Meter {
+	/**
+	 * Factor applied to CPU-time budgets while metering.
+	 */
+	static final long BACKSTOP = 10;
+
+	private static final String OWNER = Meter.class.getName().replace('.', '/');
+
+	private static volatile long rate = 0;
+
+	private Meter() {
+	}
+
+	/**
+	 * Sets the number of instructions a player may execute per millisecond
+	 * of timeout, metering is disabled if zero.
+	 */
+	static void setRate(long rate) {
+		if (rate < 0)
+			throw new IllegalArgumentException("Meter rate must not be negative");
+
+		Meter.rate = rate;
+	}
+
+	static long getRate() {
+		return rate;
+	}
+
+	static boolean isEnabled() {
+		return rate > 0;
+	}
+
+	/**
+	 * @param timeout [ms]
+	 * @return number of instructions allowed within <code>timeout</code>,
+	 *         <code>0</code> if metering is disabled.
+	 */
+	static long budget(long timeout) {
+		if (timeout <= 0 || rate <= 0)
+			return 0;
+
+		return timeout > Long.MAX_VALUE / rate ? Long.MAX_VALUE : timeout * rate;
+	}
+
+	/**
+	 * @param instructions number of instructions left.
+	 * @return the time they correspond to [ns].
+	 */
+	static long toNanos(long instructions) {
+		return rate <= 0 ? Long.MAX_VALUE : instructions * 1000000 / rate;
+	}
+
+	/**
+	 * @param timeout CPU-time budget [ns].
+	 * @return the budget to be enforced by the {@link Watchdog}.
+	 */
+	static long backstop(long timeout) {
+		return rate > 0 && timeout > 0 ? timeout * BACKSTOP : timeout;
+	}
+
+	/**
+	 * Called by metered player code. Charges <code>cost</code>
+	 * instructions to the current thread if it is a {@link CodunoThread}.
+	 * Players may call this, too, which is harmless as long as negative
+	 * costs are ignored.
+	 *
+	 * @throws CodunoTerminationError if the current thread exceeded its
+	 *                                budget or was terminated.
+	 */
+	public static void tick(int cost) {
+		Thread thread = Thread.currentThread();
+
+		if (cost > 0 && thread instanceof CodunoThread)
+			((CodunoThread)thread).tick(cost);
+	}
+
+	/**
+	 * Rewrites a class file so that it calls {@link #tick(int)}.
+	 */
+	static byte[] instrument(byte[] bytes) {
+		ClassReader reader = new ClassReader(bytes);
+		ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+
+		reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+				return new Counter(super.visitMethod(access, name, descriptor, signature, exceptions));
+			}
+		}, 0);
+
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Inserts calls of {@link #tick(int)}. No branches are added, so the
+	 * stack map frames of the method stay valid.
+	 */
+	private static final class Counter extends MethodVisitor {
+		/**
+		 * Number of instructions visited so far.
+		 */
+		private int count = 0;
+
+		/**
+		 * Labels visited so far, with the value of {@link #count} at that
+		 * point. A jump to one of them is a back-edge.
+		 */
+		private final Map<Label, Integer> visited = new HashMap<>();
+
+		Counter(MethodVisitor visitor) {
+			super(Opcodes.ASM9, visitor);
+		}
+
+		@Override
+		public void visitCode() {
+			super.visitCode();
+			tick(1);
+		}
+
+		@Override
+		public void visitLabel(Label label) {
+			super.visitLabel(label);
+			visited.put(label, count);
+		}
+
+		@Override
+		public void visitJumpInsn(int opcode, Label label) {
+			back(label);
+			super.visitJumpInsn(opcode, label);
+		}
+
+		@Override
+		public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+			back(concat(dflt, labels));
+			super.visitTableSwitchInsn(min, max, dflt, labels);
+		}
+
+		@Override
+		public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+			back(concat(dflt, labels));
+			super.visitLookupSwitchInsn(dflt, keys, labels);
+		}
+
+		@Override
+		public void visitInsn(int opcode) {
+			count++;
+			super.visitInsn(opcode);
+		}
+
+		@Override
+		public void visitIntInsn(int opcode, int operand) {
+			count++;
+			super.visitIntInsn(opcode, operand);
+		}
+
+		@Override
+		public void visitVarInsn(int opcode, int var) {
+			count++;
+			super.visitVarInsn(opcode, var);
+		}
+
+		@Override
+		public void visitTypeInsn(int opcode, String type) {
+			count++;
+			super.visitTypeInsn(opcode, type);
+		}
+
+		@Override
+		public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+			count++;
+			super.visitFieldInsn(opcode, owner, name, descriptor);
+		}
+
+		@Override
+		public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+			count++;
+			super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+		}
+
+		@Override
+		public void visitInvokeDynamicInsn(String name, String descriptor, Handle handle, Object... arguments) {
+			count++;
+			super.visitInvokeDynamicInsn(name, descriptor, handle, arguments);
+		}
+
+		@Override
+		public void visitLdcInsn(Object value) {
+			count++;
+			super.visitLdcInsn(value);
+		}
+
+		@Override
+		public void visitIincInsn(int var, int increment) {
+			count++;
+			super.visitIincInsn(var, increment);
+		}
+
+		@Override
+		public void visitMultiANewArrayInsn(String descriptor, int dimensions) {
+			count++;
+			super.visitMultiANewArrayInsn(descriptor, dimensions);
+		}
+
+		/**
+		 * Ticks if one of the labels is a back-edge, charging the longest
+		 * loop body.
+		 */
+		private void back(Label... labels) {
+			int cost = 0;
+
+			for (Label label : labels) {
+				Integer start = visited.get(label);
+
+				if (start != null)
+					cost = Math.max(cost, count - start + 1);
+			}
+
+			if (cost > 0)
+				tick(cost);
+		}
+
+		private void tick(int cost) {
+			if (cost <= Short.MAX_VALUE)
+				super.visitIntInsn(Opcodes.SIPUSH, cost);
+			else
+				super.visitLdcInsn(cost);
+
+			super.visitMethodInsn(Opcodes.INVOKESTATIC, OWNER, "tick", "(I)V", false);
+		}
+
+		private static Label[] concat(Label first, Label[] rest) {
+			Label[] result = new Label[rest.length + 1];
+			result[0] = first;
+			System.arraycopy(rest, 0, result, 1, rest.length);
+			return result;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package uno.cod;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Collects the counters exposed via {@link MetricsMXBean}. Recording is
+ * lock-free and cheap enough to be always on.
+ *
+ * CPU time of a run or task is attributed to the player that was handed
+ * to {@link Coduno#run(Solution, String, Runnable, long)},
+ * {@link CodunoWorker#submit(Solution, Runnable, long, long)} or
+ * {@link TurnBarrier#TurnBarrier(java.util.List)}, or to the Runnable
+ * itself if it is a Solution (see {@link Coduno#player(Runnable)}). Runs
+ * of the game itself are not attributed to anyone.
+ */
+final class Metrics implements MetricsMXBean {
+	private static final int BUCKETS = 32;
+
+	private static final Metrics instance = new Metrics();
+
+	private final LongAdder started = new LongAdder(), completed = new LongAdder(), failed = new LongAdder();
+
+	private final LongAdder timeouts = new LongAdder();
+
+	private final Map<String, LongAdder> cpu = new ConcurrentHashMap<>();
+
+	private final Map<String, LongAdder> denials = new ConcurrentHashMap<>();
+
+	private final LongAdder classes = new LongAdder(), classTime = new LongAdder();
+
+	private final AtomicLongArray runs = new AtomicLongArray(BUCKETS);
+
+	private Metrics() {
+	}
+
+	/**
+	 * Registers the MXBean as <code>uno.cod:type=Metrics</code>, unless
+	 * already done.
+	 */
+	static void register() {
+		try {
+			ObjectName name = new ObjectName("uno.cod:type=Metrics");
+
+			if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+				ManagementFactory.getPlatformMBeanServer().registerMBean(instance, name);
+		}
+		catch (JMException e) {
+			Logger.getGlobal().warning("Unable to register metrics: " + e);
+		}
+	}
+
+	static void matchStarted() {
+		instance.started.increment();
+	}
+
+	static void matchEnded(boolean success) {
+		(success ? instance.completed : instance.failed).increment();
+	}
+
+	static void timeout() {
+		instance.timeouts.increment();
+	}
+
+	/**
+	 * Charges the CPU time of a run or task to a player, also within
+	 * <code>match</code>.
+	 *
+	 * @param match the run or task belongs to, may be <code>null</code>.
+	 * @param player the Solution the run or task called, may be
+	 *               <code>null</code>.
+	 * @param time [ns], ignored if negative (the thread died before its CPU
+	 *             time could be sampled).
+	 * @param timeout whether it was stopped for exceeding its budget.
+	 */
+	static void charge(Match match, Solution player, long time, boolean timeout) {
+		// no game loaded, so there are no players either
+		if (player == null || Coduno.getInterface() == null)
+			return;
+
+		String id;
+
+		try {
+			id = match == null ? Coduno.resolve(player.getClass()) : match.resolve(player);
+		}
+		catch (IllegalArgumentException e) {
+			return;
+		}
+
+		time = Math.max(0, time);
+		add(instance.cpu, id, time);
+
+		if (match != null)
+			match.charge(id, time, timeout);
+	}
+
+	/**
+	 * @param check that denied something, for example the class of a
+	 *              denied permission.
+	 */
+	static void deny(String check) {
+		add(instance.denials, check, 1);
+	}
+
+	/**
+	 * @param time it took to read and define the class [ns].
+	 */
+	static void defined(long time) {
+		instance.classes.increment();
+		instance.classTime.add(time);
+	}
+
+	/**
+	 * @param time wall-clock time of a call of {@link Coduno#run} [ns].
+	 */
+	static void ran(long time) {
+		long micros = TimeUnit.NANOSECONDS.toMicros(time);
+		int bucket = micros <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+		instance.runs.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+	}
+
+	@Override
+	public long getMatchesStarted() {
+		return started.sum();
+	}
+
+	@Override
+	public long getMatchesCompleted() {
+		return completed.sum();
+	}
+
+	@Override
+	public long getMatchesFailed() {
+		return failed.sum();
+	}
+
+	@Override
+	public long getTimeouts() {
+		return timeouts.sum();
+	}
+
+	@Override
+	public Map<String, Long> getPlayerCpuTime() {
+		return snapshot(cpu);
+	}
+
+	@Override
+	public Map<String, Long> getDenials() {
+		return snapshot(denials);
+	}
+
+	@Override
+	public long getClassesDefined() {
+		return classes.sum();
+	}
+
+	@Override
+	public long getClassDefinitionTime() {
+		return classTime.sum();
+	}
+
+	@Override
+	public long getRuns() {
+		long sum = 0;
+
+		for (int i = 0; i < BUCKETS; i++)
+			sum += runs.get(i);
+
+		return sum;
+	}
+
+	@Override
+	public long[] getRunHistogram() {
+		long[] result = new long[BUCKETS];
+
+		for (int i = 0; i < BUCKETS; i++)
+			result[i] = runs.get(i);
+
+		return result;
+	}
+
+	static void add(Map<String, LongAdder> map, String key, long value) {
+		LongAdder adder = map.get(key);
+
+		if (adder == null) {
+			map.putIfAbsent(key, new LongAdder());
+			adder = map.get(key);
+		}
+
+		adder.add(value);
+	}
+
+	static Map<String, Long> snapshot(Map<String, LongAdder> map) {
+		Map<String, Long> result = new TreeMap<>();
+
+		for (Map.Entry<String, LongAdder> entry : map.entrySet())
+			result.put(entry.getKey(), entry.getValue().sum());
+
+		return result;
+	}
+}
@@ -0,0 +1,73 @@
+package uno.cod;
+
+import java.util.Map;
+
+/**
+ * Counters of a running Coduno, registered with the platform MBean server
+ * as <code>uno.cod:type=Metrics</code>. All counters start at zero when
+ * the JVM starts and are never reset.
+ *
+ * @see Metrics
+ */
+public interface MetricsMXBean {
+	long getMatchesStarted();
+
+	long getMatchesCompleted();
+
+	/**
+	 * @return number of matches that ended with an exception.
+	 */
+	long getMatchesFailed();
+
+	/**
+	 * @return number of runs and tasks stopped for exceeding their CPU-time,
+	 *         instruction or allocation budget.
+	 */
+	long getTimeouts();
+
+	/**
+	 * @return CPU time used by runs and tasks on behalf of each player
+	 *         [ns], by player ID. Only runs and tasks that were handed a
+	 *         Solution are counted, either explicitly (see
+	 *         {@link Coduno#run(Solution, String, Runnable, long)}) or as
+	 *         the Runnable itself. This stays empty for games that wrap
+	 *         calls of players in Runnables of their own and use the
+	 *         older overloads.
+	 */
+	Map<String, Long> getPlayerCpuTime();
+
+	/**
+	 * @return number of operations denied to players, by the type of the
+	 *         denied permission (for example <code>FilePermission</code>),
+	 *         or by the check of {@link SecurityManager} that denied them
+	 *         if it does not take a permission (for example
+	 *         <code>checkPropertyAccess</code>). Classes rejected by
+	 *         <code>--bytecode-sandbox</code> count as
+	 *         <code>bytecode</code>.
+	 */
+	Map<String, Long> getDenials();
+
+	/**
+	 * @return number of classes defined by {@link CodunoClassLoader}s.
+	 */
+	long getClassesDefined();
+
+	/**
+	 * @return time spent reading and defining those classes [ns].
+	 */
+	long getClassDefinitionTime();
+
+	/**
+	 * @return number of calls of {@link Coduno#run}.
+	 */
+	long getRuns();
+
+	/**
+	 * @return wall-clock time of calls of {@link Coduno#run} as a
+	 *         histogram: element <code>i</code> counts calls that took
+	 *         less than <code>2<sup>i</sup></code> microseconds but at least
+	 *         half of that, the last element counts all calls that took
+	 *         longer.
+	 */
+	long[] getRunHistogram();
+}
@@ -0,0 +1,55 @@
+package uno.cod;
+
+import uno.cod.record.RecordReader;
+import uno.cod.record.Recorder;
+import uno.cod.record.TextConverter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * A game that writes its logfile as a binary record of typed events instead
+ * of free-form text. The record can be read with
+ * {@link uno.cod.record.RecordReader} and converted to text with
+ * {@link uno.cod.record.TextConverter}.
+ */
+public interface RecordingGame<T extends Solution> extends Game<T> {
+	/**
+	 * Running the actual simulation. Called instead of
+	 * {@link Game#run(List, OutputStreamWriter)}.
+	 *
+	 * @param args all commandline parameters that have not been consumed by
+	 *             the framework.
+	 * @param recorder writes to the logfile that was created for the
+	 *                 current simulation. Is closed by Coduno after the
+	 *                 game finished.
+	 */
+	void run(List<String> args, Recorder recorder);
+
+	/**
+	 * Runs the simulation for callers that only know {@link Game}: the
+	 * record is kept in memory and written to <code>writer</code> as text
+	 * (see {@link TextConverter}) once the game finished. Coduno calls
+	 * {@link #run(List, Recorder)} directly instead.
+	 */
+	@Override
+	default void run(List<String> args, OutputStreamWriter writer) {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		try {
+			try (Recorder recorder = new Recorder(buffer)) {
+				run(args, recorder);
+			}
+
+			try (RecordReader reader = new RecordReader(new ByteArrayInputStream(buffer.toByteArray()))) {
+				TextConverter.convert(reader, writer);
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,682 @@
+package uno.cod;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records what the players of a match answer to the {@link Game}, so the
+ * match can be replayed later without loading or running any player code
+ * (see <code>--record-calls</code> and <code>--replay</code>).
+ *
+ * While recording, every Solution handed to the Game is a {@link Proxy} of
+ * the player interface that passes calls on to the Solution and remembers
+ * their arguments and outcome: the return value, the exception thrown, or
+ * that the thread was stopped because it exceeded its budget. While
+ * replaying, the proxies answer every call with the outcome recorded for
+ * the same player in the same order, and re-raise recorded timeouts via
+ * the current {@link CodunoThread}. A call with other arguments than
+ * recorded fails, as the Game took another course. Together with the arguments of the match (which
+ * hold the random seed) this reproduces the log and the winner of a
+ * deterministic Game.
+ *
+ * Values are recorded as primitives, strings or serialized objects. Values
+ * and exceptions whose classes belong to player code cannot be replayed;
+ * replaying such a call fails.
+ *
+ * Besides the player interface, the proxies implement {@link Checkpointing}
+ * only. Games that cast Solutions to {@link AbstractSolution} are rejected,
+ * see {@link #check(Class)}.
+ */
+final class Replay {
+	/**
+	 * Written at the start of every file ("CODR").
+	 */
+	private static final int MAGIC = 0x434f4452;
+
+	private static final int RETURN = 0, THROW = 1, STOP = 2;
+
+	private static final int NULL = 0, BOOLEAN = 1, BYTE = 2, CHAR = 3, SHORT = 4, INT = 5, LONG = 6, FLOAT = 7, DOUBLE = 8, STRING = 9, OBJECT = 10, OPAQUE = 11;
+
+	/**
+	 * One call of the Game to a player.
+	 */
+	private static final class Call {
+		final String method;
+
+		final byte[] arguments;
+
+		final int kind;
+
+		final byte[] outcome;
+
+		Call(String method, byte[] arguments, int kind, byte[] outcome) {
+			this.method = method;
+			this.arguments = arguments;
+			this.kind = kind;
+			this.outcome = outcome;
+		}
+	}
+
+	private final List<Integer> players;
+
+	private final List<String> args;
+
+	/**
+	 * Calls recorded so far, encoded, in the order they returned.
+	 */
+	private final Queue<byte[]> recorded;
+
+	/**
+	 * Calls to replay, by index of the player.
+	 */
+	private final List<Queue<Call>> calls;
+
+	/**
+	 * Index of the player behind every proxy handed out.
+	 */
+	private final Map<Object, Integer> proxies = Collections.synchronizedMap(new IdentityHashMap<Object, Integer>());
+
+	/**
+	 * Where each Game class refers to {@link AbstractSolution}, or an empty
+	 * string if it does not, see {@link #check(Class)}.
+	 */
+	private static final ClassValue<String> casts = new ClassValue<String>() {
+		@Override
+		protected String computeValue(Class<?> game) {
+			try {
+				return findCast(game);
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	};
+
+	private Replay(List<Integer> players, List<String> args, Queue<byte[]> recorded, List<Queue<Call>> calls) {
+		this.players = players;
+		this.args = args;
+		this.recorded = recorded;
+		this.calls = calls;
+	}
+
+	/**
+	 * Starts recording a match.
+	 */
+	static Replay record(List<Integer> players, List<String> args) {
+		return new Replay(players, args, new ConcurrentLinkedQueue<byte[]>(), null);
+	}
+
+	/**
+	 * Reads a recording written by {@link #write(File)}.
+	 */
+	static Replay read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException(file + " is no recording of calls");
+
+			List<Integer> players = new ArrayList<>();
+			List<String> args = new ArrayList<>();
+			List<Queue<Call>> calls = new ArrayList<>();
+
+			for (int i = in.readInt(); i > 0; i--) {
+				players.add(in.readInt());
+				calls.add(new ConcurrentLinkedQueue<Call>());
+			}
+
+			for (int i = in.readInt(); i > 0; i--)
+				args.add(in.readUTF());
+
+			for (int length = in.readInt(); length >= 0; length = in.readInt()) {
+				byte[] bytes = new byte[length];
+				in.readFully(bytes);
+
+				DataInputStream call = new DataInputStream(new ByteArrayInputStream(bytes));
+				int player = call.readInt();
+				String method = call.readUTF();
+				byte[] arguments = new byte[call.readInt()];
+				call.readFully(arguments);
+				int kind = call.readByte();
+				byte[] outcome = new byte[call.available()];
+				call.readFully(outcome);
+
+				if (player < 0 || player >= calls.size())
+					throw new IOException("Call to unknown player " + player);
+
+				calls.get(player).add(new Call(method, arguments, kind, outcome));
+			}
+
+			return new Replay(Collections.unmodifiableList(players), Collections.unmodifiableList(args), null, calls);
+		}
+	}
+
+	List<Integer> getPlayers() {
+		return players;
+	}
+
+	List<String> getArgs() {
+		return args;
+	}
+
+	boolean isReplaying() {
+		return calls != null;
+	}
+
+	/**
+	 * Writes all calls recorded so far.
+	 */
+	void write(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file))))) {
+			out.writeInt(MAGIC);
+			out.writeInt(players.size());
+
+			for (Integer player : players)
+				out.writeInt(player);
+
+			out.writeInt(args.size());
+
+			for (String arg : args)
+				out.writeUTF(arg);
+
+			for (byte[] call : recorded) {
+				out.writeInt(call.length);
+				out.write(call);
+			}
+
+			out.writeInt(-1);
+		}
+	}
+
+	/**
+	 * Returns the index of the player behind a proxy handed out by this
+	 * replay, or <code>null</code> if <code>solution</code> is none.
+	 */
+	Integer identify(Object solution) {
+		return proxies.get(solution);
+	}
+
+	/**
+	 * Returns the Solution behind a recording proxy.
+	 */
+	Solution unwrap(Solution proxy) {
+		return (Solution)((Recording)Proxy.getInvocationHandler(proxy)).target;
+	}
+
+	/**
+	 * Returns a proxy that passes calls on to <code>target</code> and
+	 * records them as calls to the player at <code>index</code>.
+	 */
+	Solution wrap(Solution target, int index) {
+		return register(new Recording(target, index), index);
+	}
+
+	/**
+	 * Returns a proxy that answers calls with what was recorded for the
+	 * player at <code>index</code>. Several proxies of the same player
+	 * (see {@link Coduno#reload(Solution)}) share the recorded calls.
+	 */
+	Solution replay(int index) {
+		return register(new Replaying(index), index);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Solution register(InvocationHandler handler, int index) {
+		Class<Solution> face = Coduno.getInterface();
+		Solution proxy = (Solution)Proxy.newProxyInstance(face.getClassLoader(), new Class<?>[] { face, Checkpointing.class }, handler);
+		proxies.put(proxy, index);
+		return proxy;
+	}
+
+	/**
+	 * Makes sure the Game can be handed proxies, that is it does not cast
+	 * Solutions to {@link AbstractSolution} or call its methods directly.
+	 * Looks at all classes in the jar of the Game once per process.
+	 *
+	 * @throws CodunoException if it does, or its jar could not be read.
+	 */
+	static void check(Class<?> game) throws CodunoException {
+		String cast;
+
+		try {
+			cast = casts.get(game);
+		}
+		catch (UncheckedIOException e) {
+			throw new CodunoException("Unable to read " + game.getName(), e.getCause());
+		}
+
+		if (!cast.isEmpty())
+			throw new CodunoException("Calls cannot be recorded or replayed, as " + cast + " refers to AbstractSolution. Games should use Checkpointing instead.");
+	}
+
+	private static String findCast(Class<?> game) throws IOException {
+		File jar = ResultCache.toFile(game.getProtectionDomain().getCodeSource().getLocation());
+
+		// not a local jar, so there is nothing to look at
+		if (jar == null)
+			return "";
+
+		final String type = Type.getInternalName(AbstractSolution.class);
+		final String[] found = { "" };
+
+		try (JarFile file = new JarFile(jar)) {
+			Enumeration<JarEntry> entries = file.entries();
+
+			while (entries.hasMoreElements() && found[0].isEmpty()) {
+				JarEntry entry = entries.nextElement();
+
+				if (!entry.getName().endsWith(".class"))
+					continue;
+
+				try (InputStream in = file.getInputStream(entry)) {
+					final String name = entry.getName().substring(0, entry.getName().length() - 6).replace('/', '.');
+
+					new ClassReader(in).accept(new ClassVisitor(Opcodes.ASM9) {
+						@Override
+						public MethodVisitor visitMethod(int access, final String method, String descriptor, String signature, String[] exceptions) {
+							return new MethodVisitor(Opcodes.ASM9) {
+								@Override
+								public void visitTypeInsn(int opcode, String operand) {
+									if (operand.equals(type) && (opcode == Opcodes.CHECKCAST || opcode == Opcodes.INSTANCEOF))
+										found[0] = name + "." + method;
+								}
+
+								@Override
+								public void visitMethodInsn(int opcode, String owner, String member, String descriptor, boolean isInterface) {
+									if (owner.equals(type))
+										found[0] = name + "." + method;
+								}
+							};
+						}
+					}, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+				}
+			}
+		}
+
+		return found[0];
+	}
+
+	/**
+	 * Checks whether a call is answered by the proxy itself, which is the
+	 * case for <code>equals</code> and <code>hashCode</code> (by identity).
+	 */
+	private static boolean isLocal(Method method) {
+		return method.getDeclaringClass() == Object.class && !method.getName().equals("toString");
+	}
+
+	private static Object invokeLocal(Object proxy, Method method, Object[] args) {
+		if (method.getName().equals("equals"))
+			return proxy == args[0];
+
+		return System.identityHashCode(proxy);
+	}
+
+	private final class Recording implements InvocationHandler {
+		final Object target;
+
+		final int index;
+
+		Recording(Object target, int index) {
+			this.target = target;
+			this.index = index;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (isLocal(method))
+				return invokeLocal(proxy, method, args);
+
+			// before the call, as the player may modify them
+			byte[] arguments = encodeArguments(args);
+
+			// a Solution without checkpoints
+			if (!method.getDeclaringClass().isInstance(target)) {
+				add(method, arguments, RETURN, encode(null));
+				return null;
+			}
+
+			Object result;
+
+			try {
+				result = method.invoke(target, args);
+			}
+			catch (InvocationTargetException e) {
+				Throwable cause = e.getCause();
+
+				if (cause instanceof ThreadDeath || cause instanceof CodunoTerminationError)
+					stopped(method, arguments);
+				else
+					add(method, arguments, THROW, encode(cause));
+
+				throw cause;
+			}
+			catch (ThreadDeath|CodunoTerminationError e) {
+				stopped(method, arguments);
+				throw e;
+			}
+
+			add(method, arguments, RETURN, encode(result));
+			return result;
+		}
+
+		/**
+		 * Records that the current thread was stopped during a call, along
+		 * with the reason the run was failed with.
+		 */
+		private void stopped(Method method, byte[] arguments) throws IOException {
+			Throwable reason = null;
+			Thread thread = Thread.currentThread();
+
+			if (thread instanceof CodunoThread) {
+				try {
+					((CodunoThread)thread).getCurrentResult().getNow(null);
+				}
+				catch (CompletionException e) {
+					reason = e.getCause();
+				}
+				catch (CancellationException e) {}
+			}
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeUTF(reason instanceof CodunoAllocationException ? CodunoAllocationException.class.getName() : CodunoTimeoutException.class.getName());
+			out.writeUTF(reason == null || reason.getMessage() == null ? "" : reason.getMessage());
+			add(method, arguments, STOP, bytes.toByteArray());
+		}
+
+		private void add(Method method, byte[] arguments, int kind, byte[] outcome) throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(index);
+			out.writeUTF(method.getName());
+			out.writeInt(arguments.length);
+			out.write(arguments);
+			out.writeByte(kind);
+			out.write(outcome);
+			recorded.add(bytes.toByteArray());
+		}
+	}
+
+	private final class Replaying implements InvocationHandler {
+		final int index;
+
+		Replaying(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (isLocal(method))
+				return invokeLocal(proxy, method, args);
+
+			Call call = calls.get(index).poll();
+
+			if (call == null)
+				throw new IllegalStateException("Replay diverged: no call of " + method.getName() + " to player " + players.get(index) + " was recorded");
+
+			if (!call.method.equals(method.getName()))
+				throw new IllegalStateException("Replay diverged: player " + players.get(index) + " was called " + method.getName() + " instead of " + call.method);
+
+			if (!Arrays.equals(call.arguments, encodeArguments(args)))
+				throw new IllegalStateException("Replay diverged: player " + players.get(index) + " was called " + method.getName() + " with other arguments than recorded");
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(call.outcome));
+
+			switch (call.kind) {
+				case RETURN:
+					return decode(in);
+				case THROW:
+					String type = in.readUTF();
+					String message = in.readUTF();
+					Object exception;
+
+					try {
+						exception = decode(in);
+					}
+					catch (IOException e) {
+						// the exception's class belongs to the player
+						exception = null;
+					}
+
+					if (exception instanceof Throwable)
+						throw (Throwable)exception;
+
+					throw new RuntimeException(type + (message.isEmpty() ? "" : ": " + message));
+				default:
+					String reason = in.readUTF();
+					message = in.readUTF();
+					Thread thread = Thread.currentThread();
+
+					if (thread instanceof CodunoThread) {
+						CodunoThread self = (CodunoThread)thread;
+						self.fail(self.getCurrentResult(), reason.equals(CodunoAllocationException.class.getName()) ? new CodunoAllocationException(message) : new CodunoTimeoutException(message));
+					}
+
+					throw new ThreadDeath();
+			}
+		}
+	}
+
+	/**
+	 * Encodes the arguments of a call, so a replay can tell whether the
+	 * Game called the player alike. Solutions handed out by this replay
+	 * are encoded as the index of their player.
+	 */
+	private byte[] encodeArguments(Object[] args) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		int count = args == null ? 0 : args.length;
+		out.writeInt(count);
+
+		for (int i = 0; i < count; i++) {
+			Integer player = identify(args[i]);
+
+			if (player != null) {
+				out.writeByte(-1);
+				out.writeInt(player);
+			}
+			else {
+				out.writeByte(0);
+				out.write(encode(args[i]));
+			}
+		}
+
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Encodes a return value, or an exception along with its type and
+	 * message.
+	 */
+	private static byte[] encode(Object value) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		if (value instanceof Throwable) {
+			out.writeUTF(value.getClass().getName());
+			out.writeUTF(((Throwable)value).getMessage() == null ? "" : ((Throwable)value).getMessage());
+		}
+
+		if (value == null) {
+			out.writeByte(NULL);
+		}
+		else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean)value);
+		}
+		else if (value instanceof Byte) {
+			out.writeByte(BYTE);
+			out.writeByte((Byte)value);
+		}
+		else if (value instanceof Character) {
+			out.writeByte(CHAR);
+			out.writeChar((Character)value);
+		}
+		else if (value instanceof Short) {
+			out.writeByte(SHORT);
+			out.writeShort((Short)value);
+		}
+		else if (value instanceof Integer) {
+			out.writeByte(INT);
+			out.writeInt((Integer)value);
+		}
+		else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long)value);
+		}
+		else if (value instanceof Float) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float)value);
+		}
+		else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double)value);
+		}
+		else if (value instanceof String) {
+			byte[] string = ((String)value).getBytes(StandardCharsets.UTF_8);
+			out.writeByte(STRING);
+			out.writeInt(string.length);
+			out.write(string);
+		}
+		else {
+			byte[] object = serialize(value);
+
+			if (object != null) {
+				out.writeByte(OBJECT);
+				out.writeInt(object.length);
+				out.write(object);
+			}
+			else {
+				out.writeByte(OPAQUE);
+				out.writeUTF(value.getClass().getName());
+			}
+		}
+
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Serializes an object of the JDK or the game, or returns
+	 * <code>null</code> if it cannot be. Objects of other classes would
+	 * run player code to serialize themselves.
+	 */
+	private static byte[] serialize(Object value) {
+		ClassLoader loader = value.getClass().getClassLoader();
+
+		if (!(value instanceof Serializable) || (loader != null && loader != Coduno.getGameLoader()))
+			return null;
+
+		ByteArrayOutputStream object = new ByteArrayOutputStream();
+
+		try (ObjectOutputStream stream = new ObjectOutputStream(object)) {
+			stream.writeObject(value);
+		}
+		catch (IOException e) {
+			// refers to something that is not serializable, such as a Solution
+			return null;
+		}
+
+		return object.toByteArray();
+	}
+
+	private static Object decode(DataInputStream in) throws IOException {
+		int tag = in.readByte();
+
+		switch (tag) {
+			case NULL:
+				return null;
+			case BOOLEAN:
+				return in.readBoolean();
+			case BYTE:
+				return in.readByte();
+			case CHAR:
+				return in.readChar();
+			case SHORT:
+				return in.readShort();
+			case INT:
+				return in.readInt();
+			case LONG:
+				return in.readLong();
+			case FLOAT:
+				return in.readFloat();
+			case DOUBLE:
+				return in.readDouble();
+			case STRING:
+				byte[] string = new byte[in.readInt()];
+				in.readFully(string);
+				return new String(string, StandardCharsets.UTF_8);
+			case OBJECT:
+				byte[] object = new byte[in.readInt()];
+				in.readFully(object);
+
+				try (ObjectInputStream stream = new GameObjectInputStream(new ByteArrayInputStream(object))) {
+					return stream.readObject();
+				}
+				catch (ClassNotFoundException e) {
+					throw new IOException(e);
+				}
+			case OPAQUE:
+				throw new IOException("Value of class " + in.readUTF() + " was not recorded");
+			default:
+				throw new IOException("Unknown value " + tag);
+		}
+	}
+
+	/**
+	 * Resolves classes of recorded objects with the ClassLoader of the game.
+	 */
+	private static final class GameObjectInputStream extends ObjectInputStream {
+		GameObjectInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			try {
+				return Class.forName(desc.getName(), false, Coduno.getGameLoader());
+			}
+			catch (ClassNotFoundException e) {
+				return super.resolveClass(desc);
+			}
+		}
+	}
+}
@@ -0,0 +1,262 @@
+package uno.cod;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the outcome and logfile of matches in a directory, so matches
+ * that were simulated before are not simulated again.
+ *
+ * A match is identified by the SHA-256 hash of the game's jar file, the IDs
+ * and jar files of its players, its arguments and the options of Coduno that
+ * may change its outcome (see {@link #options()}). Games are expected to be
+ * deterministic given their arguments (that is, to read their random seed
+ * from there). For every match, the directory holds
+ * <code><i>hash</i>.log</code>, a copy of the logfile, and
+ * <code><i>hash</i></code>, which contains the ID of the winner or nothing
+ * in case of a tie.
+ */
+final class ResultCache {
+	/**
+	 * Maximum number of files whose hash is remembered.
+	 */
+	private static final int DIGESTS = 4096;
+
+	/**
+	 * Hashes of files by path, along with the last modification and length
+	 * they were computed for, so unchanged jars are only read once per
+	 * process. The least recently used are evicted beyond {@link #DIGESTS}.
+	 */
+	private static final Map<String, Digest> digests = new LinkedHashMap<String, Digest>(256, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Digest> eldest) {
+			return size() > DIGESTS;
+		}
+	};
+
+	/**
+	 * Coarsest granularity of modification times expected from file
+	 * systems [ms].
+	 */
+	private static final long RACY = 2000;
+
+	private final File directory;
+
+	private static final class Digest {
+		final String stamp;
+
+		final byte[] bytes;
+
+		Digest(String stamp, byte[] bytes) {
+			this.stamp = stamp;
+			this.bytes = bytes;
+		}
+	}
+
+	/**
+	 * The outcome of a cached match.
+	 */
+	static final class Entry {
+		private final String winner;
+
+		Entry(String winner) {
+			this.winner = winner;
+		}
+
+		/**
+		 * @return the ID of the winner, or <code>null</code> in case of a tie.
+		 */
+		String getWinner() {
+			return winner;
+		}
+	}
+
+	ResultCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Computes the hash identifying a match.
+	 *
+	 * @return the hash in hexadecimal notation, or <code>null</code> if the
+	 *         game or a player is not a local jar file and thus cannot be
+	 *         cached.
+	 */
+	String key(List<Integer> players, List<String> args) throws IOException {
+		MessageDigest digest = newDigest();
+		File game = toFile(Coduno.getGameLoader().getURLs()[0]);
+
+		if (game == null)
+			return null;
+
+		digest.update(digest(game));
+
+		for (Integer player : players) {
+			File jar = toFile(Coduno.getPlayerURL(player));
+
+			if (jar == null)
+				return null;
+
+			digest.update(player.toString().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte)0);
+			digest.update(digest(jar));
+		}
+
+		for (String arg : args) {
+			digest.update((byte)0);
+			digest.update(arg.getBytes(StandardCharsets.UTF_8));
+		}
+
+		digest.update((byte)1);
+		digest.update(options().getBytes(StandardCharsets.UTF_8));
+
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Describes the options that limit or isolate players, as a match
+	 * may end differently if they change. Only options are included, not
+	 * what Coduno derived from the game, as that may not be known yet.
+	 */
+	private static String options() {
+		String face = Coduno.getPlayerInterface();
+
+		return "game-timeout=" + Coduno.getGameTimeout()
+			+ "\nallocation-limit=" + Coduno.getAllocationLimit()
+			+ "\nmeter=" + Meter.getRate()
+			+ "\nbytecode-sandbox=" + Sandbox.isEnabled()
+			+ "\navoid-static=" + Coduno.isAvoidStatic()
+			+ "\nplayer-interface=" + (face == null ? "" : face);
+	}
+
+	static String toHex(byte[] bytes) {
+		StringBuilder builder = new StringBuilder(2 * bytes.length);
+
+		for (byte b : bytes)
+			builder.append(String.format("%02x", b));
+
+		return builder.toString();
+	}
+
+	/**
+	 * Looks up a match and restores its logfile to <code>logfile</code>.
+	 *
+	 * @return the outcome of the match, or <code>null</code> if it was not
+	 *         cached.
+	 */
+	Entry get(String key, File logfile) throws IOException {
+		File result = new File(directory, key);
+		File log = new File(directory, key + ".log");
+
+		if (!result.isFile() || !log.isFile())
+			return null;
+
+		String winner = new String(Files.readAllBytes(result.toPath()), StandardCharsets.UTF_8).trim();
+		logfile.getParentFile().mkdirs();
+		Files.copy(log.toPath(), logfile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return new Entry(winner.isEmpty() ? null : winner);
+	}
+
+	/**
+	 * Stores the outcome and logfile of a match. The result is written last,
+	 * so concurrent lookups never see it without its logfile.
+	 *
+	 * @param winner the ID of the winner, or <code>null</code> in case of a
+	 *               tie.
+	 */
+	void put(String key, String winner, File logfile) throws IOException {
+		directory.mkdirs();
+
+		File log = File.createTempFile(key, ".tmp", directory);
+		Files.copy(logfile.toPath(), log.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		Files.move(log.toPath(), new File(directory, key + ".log").toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		File result = File.createTempFile(key, ".tmp", directory);
+		Files.write(result.toPath(), (winner == null ? "" : winner).getBytes(StandardCharsets.UTF_8));
+		Files.move(result.toPath(), new File(directory, key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Returns the local file behind a (possibly <code>jar:</code>) URL, or
+	 * <code>null</code> if it is no local file.
+	 */
+	static File toFile(URL url) throws MalformedURLException {
+		String location = url.toString();
+
+		if (location.startsWith("jar:"))
+			location = location.substring(4, location.contains("!/") ? location.indexOf("!/") : location.length());
+
+		URL file = new URL(location);
+
+		if (!file.getProtocol().equals("file"))
+			return null;
+
+		File result = new File(file.getPath());
+		return result.isFile() ? result : null;
+	}
+
+	/**
+	 * Hashes the contents of a file. The hash is remembered unless the
+	 * file was modified within {@link #RACY} of reading it, as it could be
+	 * modified again without changing its modification time or length.
+	 */
+	static byte[] digest(File file) throws IOException {
+		long modified = file.lastModified();
+		String path = file.getAbsolutePath();
+		String stamp = modified + ":" + file.length();
+		Digest memo;
+
+		synchronized (digests) {
+			memo = digests.get(path);
+		}
+
+		if (memo != null && memo.stamp.equals(stamp))
+			return memo.bytes;
+
+		byte[] result;
+
+		MessageDigest digest = newDigest();
+
+		try (InputStream in = new FileInputStream(file)) {
+			byte[] buffer = new byte[1 << 16];
+			int count;
+
+			while ((count = in.read(buffer)) >= 0)
+				digest.update(buffer, 0, count);
+		}
+
+		result = digest.digest();
+
+		if (System.currentTimeMillis() - modified > RACY) {
+			synchronized (digests) {
+				digests.put(path, new Digest(stamp, result));
+			}
+		}
+
+		return result;
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package uno.cod;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Writes the outcome of every match as one line of JSON to the file given
+ * via <code>--results</code>, for example:
+ *
+ * <pre>
+ * {"id":"<i>uuid</i>","players":[1,2],"args":[],"result":"winner","winner":"2","cached":false,
+ *  "cpu":{"1":1200000,"2":950000},"timeouts":{},"violations":{"2":1},"log":"/logs/coin/1-2.log"}
+ * </pre>
+ *
+ * <code>result</code> is one of <code>winner</code>, <code>tie</code> and
+ * <code>error</code>; in the latter case <code>winner</code> is replaced by
+ * <code>error</code>, holding the message. Counters are by player ID and
+ * players without any are left out.
+ *
+ * The file is opened for appending, so it may also be a named pipe. Every
+ * record is composed in memory and appended with a single write, so
+ * concurrent matches never interleave and readers tailing the file only
+ * ever see whole lines.
+ */
+final class ResultSink {
+	private final OutputStream out;
+
+	/**
+	 * @throws IOException if <code>file</code> can not be opened.
+	 */
+	ResultSink(File file) throws IOException {
+		this(new FileOutputStream(file, true));
+	}
+
+	/**
+	 * Writes records to <code>out</code>, used by workers to pass them on
+	 * to the {@link Supervisor}.
+	 */
+	ResultSink(OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Appends the record of a match.
+	 *
+	 * @param winner as returned by {@link Match#call()}.
+	 * @param failure what the match failed with, or <code>null</code>.
+	 */
+	void write(Match match, String winner, Throwable failure) throws IOException {
+		StringBuilder builder = new StringBuilder(256);
+
+		builder.append("{\"id\":").append(Timings.quote(match.getId()));
+		builder.append(",\"players\":").append(match.getPlayers().toString().replace(" ", ""));
+		builder.append(",\"args\":").append(Timings.quote(match.getArgs()));
+
+		if (failure != null)
+			builder.append(",\"result\":\"error\",\"error\":").append(failure.getMessage() == null ? "null" : Timings.quote(failure.getMessage()));
+		else if (winner == null)
+			builder.append(",\"result\":\"tie\",\"winner\":null");
+		else
+			builder.append(",\"result\":\"winner\",\"winner\":").append(Timings.quote(winner));
+
+		builder.append(",\"cached\":").append(match.isCached());
+		builder.append(",\"cpu\":").append(toJson(match.getCpuTime()));
+		builder.append(",\"timeouts\":").append(toJson(match.getTimeouts()));
+		builder.append(",\"violations\":").append(toJson(match.getViolations()));
+		builder.append(",\"log\":").append(Timings.quote(match.getLogFile().getPath()));
+		builder.append("}");
+
+		append(builder.toString());
+	}
+
+	/**
+	 * Appends a record composed elsewhere, such as by a worker.
+	 *
+	 * @param record one line of JSON, without the line break.
+	 */
+	void append(String record) throws IOException {
+		byte[] bytes = (record + "\n").getBytes(StandardCharsets.UTF_8);
+
+		synchronized (out) {
+			out.write(bytes);
+			out.flush();
+		}
+	}
+
+	private static String toJson(Map<String, Long> values) {
+		StringBuilder builder = new StringBuilder("{");
+
+		for (Map.Entry<String, Long> entry : values.entrySet()) {
+			if (builder.length() > 1)
+				builder.append(',');
+
+			builder.append(Timings.quote(entry.getKey())).append(':').append(entry.getValue());
+		}
+
+		return builder.append('}').toString();
+	}
+}
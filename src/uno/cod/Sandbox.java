@@ -0,0 +1,439 @@
+package uno.cod;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Confines player code without {@link SecurityManager} and without
+ * {@link Thread#stop()}, both of which are gone on current JDKs. Enabled via
+ * <code>--bytecode-sandbox</code>.
+ *
+ * Instead of checking permissions while player code runs,
+ * {@link CodunoClassLoader} verifies every class of a player before
+ * defining it: a class that refers to a forbidden class or member (files,
+ * network, reflection, threads, the JVM itself, internals of Coduno) is
+ * reported like a denied permission and not defined, so the player fails
+ * with a {@link NoClassDefFoundError} as soon as it uses the class.
+ *
+ * Instead of stopping threads, player classes are instrumented by
+ * {@link Meter}, whose calls double as cancellation points: once the
+ * {@link Watchdog} decides that a thread exceeded its budget, the thread
+ * throws a {@link CodunoTerminationError} at its next method entry or loop
+ * iteration, and blocking calls are interrupted. Swallowing it does not
+ * help, as every further cancellation point throws again. Players may
+ * still not catch {@link Error}, {@link ThreadDeath} or the error itself
+ * explicitly. {@link Throwable} may be caught, as javac does so for every
+ * <code>try</code>-with-resources.
+ *
+ * As player code must only run in threads that are watched, everything
+ * that runs code in other threads is forbidden: threads, executors,
+ * fork/join, {@link java.util.concurrent.CompletableFuture}, cleaners and
+ * finalizers. Of <code>java.util.concurrent</code>, only what is listed in
+ * {@link #SAFE} may be used.
+ *
+ * The game is trusted and not instrumented, so the thread of a run of the
+ * game itself (see {@link Coduno#run}) only stops at a cancellation point
+ * once it calls a player. Until then, an expired run of the game is merely
+ * abandoned and its thread keeps running, see
+ * {@link CodunoThread#terminate()}.
+ *
+ * The rules are deliberately coarse, everything not listed is allowed.
+ */
+final class Sandbox {
+	/**
+	 * Packages (internal names) that must not be used at all, unless a
+	 * class is listed in {@link #SAFE}.
+	 */
+	private static final String[] PACKAGES = {
+		"java/lang/annotation/processing/",
+		"java/lang/instrument/",
+		"java/lang/invoke/",
+		"java/lang/management/",
+		"java/lang/reflect/",
+		"java/net/",
+		"java/nio/channels/",
+		"java/nio/file/",
+		"java/rmi/",
+		"java/sql/",
+		"java/util/concurrent/",
+		"javax/",
+		"jdk/",
+		"sun/",
+		"com/sun/",
+		"uno/cod/",
+	};
+
+	/**
+	 * Classes that must not be used at all, unless a member is listed in
+	 * {@link #ALLOWED}.
+	 */
+	private static final Set<String> CLASSES = new HashSet<>(Arrays.asList(
+		"java/io/Console",
+		"java/io/File",
+		"java/io/FileDescriptor",
+		"java/io/FileInputStream",
+		"java/io/FileOutputStream",
+		"java/io/FileReader",
+		"java/io/FileWriter",
+		"java/io/RandomAccessFile",
+		"java/lang/ClassLoader",
+		"java/lang/Process",
+		"java/lang/ProcessBuilder",
+		"java/lang/ProcessHandle",
+		"java/lang/Runtime",
+		"java/lang/SecurityManager",
+		"java/lang/Thread",
+		"java/lang/ThreadGroup",
+		"java/lang/ref/Cleaner",
+		"java/security/AccessController",
+		"java/security/Policy",
+		"java/util/Timer",
+		"java/util/concurrent/locks/LockSupport"
+	));
+
+	/**
+	 * Classes of <code>java.util.concurrent</code> that may be used, as they
+	 * never run code in other threads: collections, synchronizers, and what
+	 * their signatures refer to. Nested classes count as their outer class.
+	 * The subpackages <code>atomic</code> and <code>locks</code> may be used
+	 * as well, except for {@link java.util.concurrent.locks.LockSupport}.
+	 */
+	private static final Set<String> SAFE = new HashSet<>(Arrays.asList(
+		"java/util/concurrent/ArrayBlockingQueue",
+		"java/util/concurrent/BlockingDeque",
+		"java/util/concurrent/BlockingQueue",
+		"java/util/concurrent/BrokenBarrierException",
+		"java/util/concurrent/Callable",
+		"java/util/concurrent/CancellationException",
+		"java/util/concurrent/CompletionException",
+		"java/util/concurrent/ConcurrentHashMap",
+		"java/util/concurrent/ConcurrentLinkedDeque",
+		"java/util/concurrent/ConcurrentLinkedQueue",
+		"java/util/concurrent/ConcurrentMap",
+		"java/util/concurrent/ConcurrentNavigableMap",
+		"java/util/concurrent/ConcurrentSkipListMap",
+		"java/util/concurrent/ConcurrentSkipListSet",
+		"java/util/concurrent/CopyOnWriteArrayList",
+		"java/util/concurrent/CopyOnWriteArraySet",
+		"java/util/concurrent/CountDownLatch",
+		"java/util/concurrent/CyclicBarrier",
+		"java/util/concurrent/DelayQueue",
+		"java/util/concurrent/Delayed",
+		"java/util/concurrent/ExecutionException",
+		"java/util/concurrent/LinkedBlockingDeque",
+		"java/util/concurrent/LinkedBlockingQueue",
+		"java/util/concurrent/LinkedTransferQueue",
+		"java/util/concurrent/Phaser",
+		"java/util/concurrent/PriorityBlockingQueue",
+		"java/util/concurrent/Semaphore",
+		"java/util/concurrent/SynchronousQueue",
+		"java/util/concurrent/ThreadLocalRandom",
+		"java/util/concurrent/TimeUnit",
+		"java/util/concurrent/TimeoutException",
+		"java/util/concurrent/TransferQueue"
+	));
+
+	private static final String[] SAFE_PACKAGES = {
+		"java/util/concurrent/atomic/",
+		"java/util/concurrent/locks/",
+	};
+
+	/**
+	 * Members (<code>owner.name</code>) that are forbidden although their
+	 * class is not.
+	 */
+	private static final Set<String> MEMBERS = new HashSet<>(Arrays.asList(
+		"java/lang/Class.forName",
+		"java/lang/Class.getClassLoader",
+		"java/lang/Class.getConstructor",
+		"java/lang/Class.getConstructors",
+		"java/lang/Class.getDeclaredConstructor",
+		"java/lang/Class.getDeclaredConstructors",
+		"java/lang/Class.getDeclaredField",
+		"java/lang/Class.getDeclaredFields",
+		"java/lang/Class.getDeclaredMethod",
+		"java/lang/Class.getDeclaredMethods",
+		"java/lang/Class.getField",
+		"java/lang/Class.getFields",
+		"java/lang/Class.getMethod",
+		"java/lang/Class.getMethods",
+		"java/lang/Class.getProtectionDomain",
+		"java/lang/Class.newInstance",
+		"java/lang/System.clearProperty",
+		"java/lang/System.console",
+		"java/lang/System.exit",
+		"java/lang/System.getProperties",
+		"java/lang/System.getProperty",
+		"java/lang/System.getenv",
+		"java/lang/System.inheritedChannel",
+		"java/lang/System.load",
+		"java/lang/System.loadLibrary",
+		"java/lang/System.setErr",
+		"java/lang/System.setIn",
+		"java/lang/System.setOut",
+		"java/lang/System.setProperties",
+		"java/lang/System.setProperty",
+		"java/lang/System.setSecurityManager"
+	));
+
+	/**
+	 * Members (<code>owner.name</code>) of forbidden classes and packages
+	 * that may be used nevertheless.
+	 */
+	private static final Set<String> ALLOWED = new HashSet<>(Arrays.asList(
+		"java/lang/Runtime.availableProcessors",
+		"java/lang/Runtime.freeMemory",
+		"java/lang/Runtime.getRuntime",
+		"java/lang/Runtime.maxMemory",
+		"java/lang/Runtime.totalMemory",
+		"java/lang/Thread.currentThread",
+		"java/lang/Thread.getId",
+		"java/lang/Thread.getName",
+		"java/lang/Thread.interrupted",
+		"java/lang/Thread.isInterrupted",
+		"java/lang/Thread.onSpinWait",
+		"java/lang/Thread.sleep",
+		"java/lang/Thread.yield",
+		"uno/cod/AbstractSolution.*",
+		"uno/cod/Checkpointing.*",
+		"uno/cod/Meter.tick",
+		"uno/cod/Solution.*"
+	));
+
+	/**
+	 * Classes whose methods may serve as bootstrap methods of
+	 * <code>invokedynamic</code>, as generated for lambdas and string
+	 * concatenation.
+	 */
+	private static final Set<String> BOOTSTRAPS = new HashSet<>(Arrays.asList(
+		"java/lang/invoke/LambdaMetafactory",
+		"java/lang/invoke/StringConcatFactory",
+		"java/lang/runtime/ObjectMethods",
+		"java/lang/runtime/SwitchBootstraps"
+	));
+
+	/**
+	 * Methods that run code in other threads, on any class of
+	 * <code>java.util</code>, as do all methods ending in
+	 * <code>Async</code> (for example those of
+	 * {@link java.util.concurrent.CompletableFuture}).
+	 */
+	private static final Set<String> PARALLEL = new HashSet<>(Arrays.asList(
+		"parallel",
+		"parallelPrefix",
+		"parallelSetAll",
+		"parallelSort",
+		"parallelStream"
+	));
+
+	/**
+	 * Types that must not be caught explicitly.
+	 */
+	private static final Set<String> UNCATCHABLE = new HashSet<>(Arrays.asList(
+		"java/lang/Error",
+		"java/lang/ThreadDeath",
+		Type.getInternalName(CodunoTerminationError.class)
+	));
+
+	private static volatile boolean enabled = false;
+
+	private Sandbox() {
+	}
+
+	static void setEnabled(boolean enabled) {
+		Sandbox.enabled = enabled;
+	}
+
+	static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Checks a class file of a player.
+	 *
+	 * @param source location of the jar file the class was read from.
+	 * @throws SecurityException if the class refers to something forbidden.
+	 *                           The violation is reported like one found
+	 *                           by {@link CodunoSecurityManager}.
+	 */
+	static void verify(byte[] bytes, URL source) throws SecurityException {
+		Checker checker = new Checker();
+		new ClassReader(bytes).accept(checker, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+		if (checker.violation == null)
+			return;
+
+		String player;
+
+		try {
+			player = Coduno.resolve(source);
+		}
+		catch (IllegalArgumentException e) {
+			player = "?";
+		}
+
+		Match match = Match.current();
+
+		if (match != null)
+			match.deny(player);
+
+		Metrics.deny("bytecode");
+		AuditLog.record(new AuditLog.Violation(player, source.toString(), null, checker.violation, new StackTraceElement[] { checker.where }));
+		throw new SecurityException(checker.violation);
+	}
+
+	/**
+	 * @return whether <code>type</code> (an internal name) must not be
+	 *         referred to.
+	 */
+	private static boolean isForbidden(String type) {
+		// arrays of forbidden types are only dangerous via their elements
+		if (type.startsWith("["))
+			return false;
+
+		if (CLASSES.contains(type))
+			return true;
+
+		for (String prefix : PACKAGES)
+			if (type.startsWith(prefix))
+				return !isSafe(type);
+
+		return false;
+	}
+
+	private static boolean isSafe(String type) {
+		int nested = type.indexOf('$');
+
+		if (SAFE.contains(nested < 0 ? type : type.substring(0, nested)))
+			return true;
+
+		for (String prefix : SAFE_PACKAGES)
+			if (type.startsWith(prefix))
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * @return whether the member <code>name</code> of <code>owner</code>
+	 *         must not be used.
+	 */
+	private static boolean isForbidden(String owner, String name, String descriptor) {
+		if (ALLOWED.contains(owner + "." + name) || ALLOWED.contains(owner + ".*"))
+			return false;
+
+		if (isForbidden(owner) || MEMBERS.contains(owner + "." + name))
+			return true;
+
+		if (PARALLEL.contains(name) || name.endsWith("Async"))
+			return owner.startsWith("java/util/");
+
+		// bulk operations of ConcurrentHashMap with a parallelism threshold
+		return owner.equals("java/util/concurrent/ConcurrentHashMap") && descriptor.startsWith("(J");
+	}
+
+	/**
+	 * Remembers the first violation of a class.
+	 */
+	private static final class Checker extends ClassVisitor {
+		String name;
+
+		String violation;
+
+		StackTraceElement where;
+
+		Checker() {
+			super(Opcodes.ASM9);
+		}
+
+		@Override
+		public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+			this.name = name;
+
+			if (superName != null && isForbidden(superName) && !ALLOWED.contains(superName + ".*"))
+				deny("<class>", "Extends " + superName);
+
+			if (interfaces != null)
+				for (String type : interfaces)
+					if (isForbidden(type) && !ALLOWED.contains(type + ".*"))
+						deny("<class>", "Implements " + type);
+		}
+
+		@Override
+		public MethodVisitor visitMethod(int access, final String method, String descriptor, String signature, String[] exceptions) {
+			// run by the finalizer thread
+			if (method.equals("finalize") && descriptor.equals("()V"))
+				deny(method, "Override finalize");
+
+			return new MethodVisitor(Opcodes.ASM9) {
+				@Override
+				public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+					member(method, owner, name, descriptor);
+				}
+
+				@Override
+				public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+					member(method, owner, name, descriptor);
+				}
+
+				@Override
+				public void visitTypeInsn(int opcode, String type) {
+					if (opcode == Opcodes.NEW && isForbidden(type) && !ALLOWED.contains(type + ".*"))
+						deny(method, "Instantiate " + type);
+				}
+
+				@Override
+				public void visitLdcInsn(Object value) {
+					if (value instanceof Handle)
+						handle(method, (Handle)value);
+				}
+
+				@Override
+				public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrap, Object... arguments) {
+					if (!BOOTSTRAPS.contains(bootstrap.getOwner()))
+						deny(method, "Bootstrap " + bootstrap.getOwner() + "." + bootstrap.getName());
+
+					for (Object argument : arguments)
+						if (argument instanceof Handle)
+							handle(method, (Handle)argument);
+				}
+
+				@Override
+				public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+					if (type != null && UNCATCHABLE.contains(type))
+						deny(method, "Catch " + type);
+				}
+			};
+		}
+
+		private void handle(String method, Handle handle) {
+			member(method, handle.getOwner(), handle.getName(), handle.getDesc());
+		}
+
+		private void member(String method, String owner, String name, String descriptor) {
+			// calls within the player's own classes
+			if (owner.equals(this.name))
+				return;
+
+			if (isForbidden(owner, name, descriptor))
+				deny(method, owner.replace('/', '.') + "." + name);
+		}
+
+		private void deny(String method, String violation) {
+			if (this.violation != null)
+				return;
+
+			this.violation = violation;
+			this.where = new StackTraceElement(name.replace('/', '.'), method, null, -1);
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package uno.cod;
+
+import java.net.URL;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Prepares isolated instances of one player's Solution ahead of demand, so
+ * that {@link Coduno#reload(Solution)} does not have to read the jar and
+ * define classes on the critical path of the game.
+ *
+ * Every instance is loaded by its own {@link CodunoClassLoader}. After an
+ * instance was taken, the pool is refilled in the background up to its
+ * depth. Instances are created via {@link Coduno#run} so a Solution that
+ * does not finish its construction within <code>--game-timeout</code>
+ * cannot block the pool.
+ */
+final class SolutionPool {
+	private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "coduno-pool-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final URL jar;
+
+	private final ClassLoader parent;
+
+	private final Class<Solution> face;
+
+	private final int depth;
+
+	private final BlockingQueue<Solution> queue;
+
+	/**
+	 * Number of instances that are either queued or being prepared.
+	 */
+	private final AtomicInteger size = new AtomicInteger();
+
+	private volatile boolean closed = false;
+
+	/**
+	 * @param jar URL of the player's jar file.
+	 * @param parent ClassLoader of the game.
+	 * @param face the interface the Solution is loaded as.
+	 * @param depth number of instances to keep prepared.
+	 */
+	SolutionPool(URL jar, ClassLoader parent, Class<Solution> face, int depth) {
+		this.jar = jar;
+		this.parent = parent;
+		this.face = face;
+		this.depth = depth;
+		this.queue = new LinkedBlockingQueue<>();
+	}
+
+	/**
+	 * Starts preparing instances until the pool is full.
+	 */
+	void fill() {
+		// pool threads outlive matches, so each task works for the match
+		// that submitted it and leaves the thread detached afterwards
+		final Match match = Match.current();
+
+		while (!closed && size.get() < depth) {
+			if (size.incrementAndGet() > depth) {
+				size.decrementAndGet();
+				return;
+			}
+
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					Solution solution = null;
+					Match.attach(match);
+
+					try {
+						solution = prepare();
+					}
+					catch (CodunoException e) {
+						Logger.getGlobal().warning("Unable to prepare Solution from " + jar + ": " + e);
+					}
+					finally {
+						Match.detach();
+					}
+
+					if (solution == null || closed)
+						size.decrementAndGet();
+					else
+						queue.add(solution);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Returns a prepared instance if there is one, and creates one in the
+	 * calling thread otherwise.
+	 *
+	 * @return a new instance, or <code>null</code> if the jar does not
+	 *         provide a Solution.
+	 */
+	Solution take() throws CodunoException {
+		Solution solution = queue.poll();
+
+		if (solution == null)
+			return create(jar, parent, face);
+
+		size.decrementAndGet();
+		fill();
+		return solution;
+	}
+
+	/**
+	 * Stops refilling and drops all prepared instances.
+	 */
+	void close() {
+		closed = true;
+		queue.clear();
+	}
+
+	private Solution prepare() throws CodunoException {
+		final Solution[] result = new Solution[1];
+		final CodunoException[] error = new CodunoException[1];
+
+		Coduno.run("prepare-" + jar, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					result[0] = create(jar, parent, face);
+				}
+				catch (CodunoException e) {
+					error[0] = e;
+				}
+			}
+		}, Coduno.getGameTimeout());
+
+		if (error[0] != null)
+			throw error[0];
+
+		return result[0];
+	}
+
+	/**
+	 * Loads a Solution from <code>jar</code> with a new
+	 * {@link CodunoClassLoader}.
+	 *
+	 * @return the first provider of <code>face</code> found in
+	 *         <code>jar</code>, or <code>null</code> if there is none.
+	 */
+	static Solution create(URL jar, ClassLoader parent, Class<Solution> face) throws CodunoException {
+		try {
+			Iterator<Solution> iterator = ServiceLoader.load(face, new CodunoClassLoader(jar, parent, Meter.isEnabled() || Sandbox.isEnabled())).iterator();
+			return iterator.hasNext() ? iterator.next() : null;
+		}
+		catch (ServiceConfigurationError|SecurityException e) {
+			throw new CodunoException("Unable to load Solution from " + jar, e);
+		}
+	}
+}
@@ -0,0 +1,387 @@
+package uno.cod;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * A {@link Daemon} that simulates every match in a separate worker JVM, so
+ * a player can neither disturb the heap nor the security manager of other
+ * matches. Workers are started ahead of time and load the game jar before
+ * their first match, so a request usually finds a warm worker waiting.
+ *
+ * Workers speak the protocol of {@link Daemon} over their stdin and stdout,
+ * one request at a time. After starting, a worker writes
+ * <code>0 Ready</code>. Before each response, it writes the record of the
+ * match for <code>--results</code> as a line of JSON, which the supervisor
+ * appends to its own sink. The supervisor writes a record itself if the
+ * worker fails to answer. If player code was denied anything by
+ * {@link CodunoSecurityManager} during a match, the response is prefixed
+ * with <code>!</code> and the worker exits. A worker is also replaced after
+ * a number of matches (see <code>--recycle-after</code>), if it dies, or if
+ * it does not answer within the game timeout plus {@link #MARGIN} (for
+ * example because the game deadlocked or a player spins in native code).
+ *
+ * @see Coduno#main
+ */
+public class Supervisor extends Daemon {
+	private static final String READY = "0 Ready";
+
+	private static final String VIOLATION = "!";
+
+	/**
+	 * Starts the record of a match written by a worker, see
+	 * {@link ResultSink}.
+	 */
+	private static final String RECORD = "{";
+
+	/**
+	 * Options that are only meant for this JVM, with the number of values
+	 * they take. Workers must not serve requests nor write results
+	 * themselves.
+	 */
+	private static final Map<String, Integer> SUPERVISOR_ONLY = new HashMap<>();
+
+	static {
+		SUPERVISOR_ONLY.put("--daemon", 0);
+		SUPERVISOR_ONLY.put("--manifest", 1);
+		SUPERVISOR_ONLY.put("--port", 1);
+		SUPERVISOR_ONLY.put("--results", 1);
+	}
+
+	/**
+	 * Wall-clock time a worker may take for starting and for each match on
+	 * top of the game timeout, for loading players and writing logs [ms].
+	 */
+	static final long MARGIN = 10000;
+
+	/**
+	 * Destroys workers that miss their deadline.
+	 */
+	private static final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "coduno-deadlines");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final List<String> command;
+
+	private final int recycle;
+
+	private final BlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+
+	private final Set<Worker> workers = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * @param workers number of worker JVMs, which is also the maximum number
+	 *                of matches simulated concurrently.
+	 * @param recycle number of matches after which a worker is replaced.
+	 * @param command to start a worker, see {@link #command}.
+	 */
+	public Supervisor(int workers, int recycle, List<String> command) {
+		super(workers);
+
+		if (recycle < 1)
+			throw new IllegalArgumentException("recycle must be positive");
+
+		this.command = command;
+		this.recycle = recycle;
+
+		for (int i = 0; i < workers; i++)
+			idle.add(spawn());
+	}
+
+	/**
+	 * Builds the command to start a worker JVM with the same Java
+	 * installation, JVM options, classpath and arguments as this one,
+	 * except for those in {@link #SUPERVISOR_ONLY}.
+	 *
+	 * @param args arguments as given to {@link Coduno#main}.
+	 */
+	public static List<String> command(String... args) {
+		List<String> command = new ArrayList<>();
+
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Coduno.class.getName());
+
+		for (int i = 0; i < args.length; i++) {
+			Integer skip = SUPERVISOR_ONLY.get(args[i]);
+
+			if (skip != null)
+				i += skip;
+			else
+				command.add(args[i]);
+		}
+
+		command.add("--worker");
+
+		return command;
+	}
+
+	/**
+	 * The other side of the pipe, run by a worker JVM. Reads requests from
+	 * <code>in</code> and simulates them one after the other until
+	 * <code>in</code> is exhausted or a violation happened.
+	 */
+	static void work(BufferedReader in, PrintStream out) throws IOException {
+		try {
+			Coduno.newGame();
+		}
+		catch (CodunoException e) {
+			out.println("0 Error: " + e.getMessage());
+			out.flush();
+			return;
+		}
+
+		out.println(READY);
+		out.flush();
+
+		String line;
+		int count = 0;
+
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+
+			int id = ++count;
+			long violations = AuditLog.count();
+			String result;
+
+			try {
+				result = simulate(Match.parse(line));
+			}
+			catch (IllegalArgumentException e) {
+				result = "Error: " + e.getMessage();
+			}
+
+			boolean violated = AuditLog.count() != violations;
+
+			out.println((violated ? VIOLATION : "") + id + " " + result);
+			out.flush();
+
+			if (violated)
+				return;
+		}
+	}
+
+	@Override
+	protected String simulate(String request, Match match) {
+		Worker worker;
+
+		try {
+			worker = idle.take();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return "Error: Interrupted";
+		}
+
+		String response;
+
+		try {
+			response = worker.call(request);
+		}
+		catch (IOException e) {
+			response = null;
+		}
+
+		String record = worker.record;
+		boolean expired = worker.expired;
+
+		if (response == null || response.startsWith(VIOLATION) || worker.matches >= recycle) {
+			worker.destroy();
+			worker = spawn();
+		}
+
+		idle.add(worker);
+
+		String error = null;
+
+		if (response == null)
+			error = expired ? "Worker did not respond in time" : "Worker exited unexpectedly";
+
+		record(match, record, error);
+
+		if (error != null)
+			return "Error: " + error;
+
+		return response.substring(response.indexOf(' ') + 1);
+	}
+
+	/**
+	 * Appends the record of a match to <code>--results</code>, if given.
+	 *
+	 * @param record as written by the worker, or <code>null</code>.
+	 * @param error why the worker did not answer, or <code>null</code>.
+	 */
+	private static void record(Match match, String record, String error) {
+		ResultSink sink = Coduno.getResultSink();
+
+		if (sink == null)
+			return;
+
+		try {
+			if (error != null)
+				sink.write(match, null, new CodunoException(error));
+			else if (record != null)
+				sink.append(record);
+		}
+		catch (IOException e) {
+			Logger.getGlobal().warning("Unable to write result of " + match + ": " + e);
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		super.shutdown();
+
+		for (Worker worker : workers)
+			worker.destroy();
+	}
+
+	private Worker spawn() {
+		Worker worker = new Worker();
+
+		try {
+			worker.start();
+		}
+		catch (IOException e) {
+			Logger.getGlobal().warning("Unable to start worker: " + e.getMessage());
+		}
+
+		return worker;
+	}
+
+	/**
+	 * A worker JVM and the pipes to it. Only used by one thread at a time.
+	 */
+	private final class Worker {
+		private Process process;
+
+		private PrintWriter in;
+
+		private BufferedReader out;
+
+		private boolean ready;
+
+		private int matches;
+
+		/**
+		 * The record the worker wrote for the last request, if any.
+		 */
+		private String record;
+
+		/**
+		 * Whether this worker was destroyed for missing a deadline.
+		 */
+		private volatile boolean expired;
+
+		void start() throws IOException {
+			process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+			in = new PrintWriter(new OutputStreamWriter(process.getOutputStream(), "UTF-8"));
+			out = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+			workers.add(this);
+		}
+
+		/**
+		 * Also sets {@link #record}.
+		 *
+		 * @return the response of the worker, or <code>null</code> if it
+		 *         exited.
+		 */
+		String call(String request) throws IOException {
+			record = null;
+
+			if (process == null)
+				start();
+
+			if (!ready) {
+				String line = read();
+
+				if (!READY.equals(line))
+					return null;
+
+				ready = true;
+			}
+
+			in.println(request);
+			in.flush();
+
+			if (in.checkError())
+				return null;
+
+			matches++;
+
+			String line = read();
+
+			while (line != null && line.startsWith(RECORD)) {
+				record = line;
+				line = read();
+			}
+
+			return line;
+		}
+
+		/**
+		 * Reads a line from the worker, destroying it if the line does not
+		 * arrive in time. Then the pipe is closed and <code>null</code> is
+		 * returned, just as if the worker exited.
+		 */
+		private String read() throws IOException {
+			long timeout = Coduno.getGameTimeout();
+
+			if (timeout <= 0)
+				return out.readLine();
+
+			final Process process = this.process;
+			ScheduledFuture<?> deadline = deadlines.schedule(new Runnable() {
+				@Override
+				public void run() {
+					expired = true;
+					process.destroyForcibly();
+				}
+			}, TimeUnit.NANOSECONDS.toMillis(Meter.backstop(TimeUnit.MILLISECONDS.toNanos(timeout))) + MARGIN, TimeUnit.MILLISECONDS);
+
+			try {
+				return out.readLine();
+			}
+			finally {
+				deadline.cancel(false);
+			}
+		}
+
+		void destroy() {
+			workers.remove(this);
+
+			if (process != null)
+				process.destroyForcibly();
+		}
+	}
+}
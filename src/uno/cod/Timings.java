@@ -0,0 +1,135 @@
+package uno.cod;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wall-clock time, CPU time and number of classes loaded per phase of a
+ * match (or of the startup of Coduno), written as JSON if
+ * <code>--timings</code> is given.
+ *
+ * CPU time is that of the thread that ran the phase. The number of classes
+ * is counted for the whole JVM, so it is only exact if no other match runs
+ * at the same time.
+ */
+final class Timings {
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	private static final ClassLoadingMXBean classes = ManagementFactory.getClassLoadingMXBean();
+
+	private static final int WALL = 0, CPU = 1, CLASSES = 2;
+
+	/**
+	 * Measurements by name of the phase, in the order the phases ended.
+	 */
+	private final Map<String, long[]> phases = new LinkedHashMap<>();
+
+	/**
+	 * A phase that is running on the thread that started it.
+	 */
+	final class Phase implements AutoCloseable {
+		private final String name;
+
+		private final long wall = System.nanoTime();
+
+		private final long cpu = threads.getCurrentThreadCpuTime();
+
+		private final long loaded = classes.getTotalLoadedClassCount();
+
+		private Phase(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Ends this phase, charging the CPU time of the current thread.
+		 */
+		@Override
+		public void close() {
+			close(threads.getCurrentThreadCpuTime() - cpu);
+		}
+
+		/**
+		 * Ends this phase, charging <code>time</code> as CPU time, for
+		 * phases whose work was done by other threads [ns].
+		 */
+		void close(long time) {
+			record(name, System.nanoTime() - wall, time, classes.getTotalLoadedClassCount() - loaded);
+		}
+	}
+
+	Phase start(String name) {
+		return new Phase(name);
+	}
+
+	/**
+	 * Records a phase that was measured elsewhere. Times are in nanoseconds.
+	 */
+	synchronized void record(String name, long wall, long cpu, long loaded) {
+		phases.put(name, new long[] { wall, cpu, loaded });
+	}
+
+	/**
+	 * Returns the measurements as a JSON object, for example
+	 * <code>{"run":{"wall":1200,"cpu":1100,"classes":3}}</code>.
+	 */
+	synchronized String toJson() {
+		StringBuilder builder = new StringBuilder("{");
+
+		for (Map.Entry<String, long[]> entry : phases.entrySet()) {
+			if (builder.length() > 1)
+				builder.append(',');
+
+			long[] value = entry.getValue();
+			builder.append(quote(entry.getKey())).append(":{\"wall\":").append(value[WALL]).append(",\"cpu\":").append(value[CPU]).append(",\"classes\":").append(value[CLASSES]).append('}');
+		}
+
+		return builder.append('}').toString();
+	}
+
+	/**
+	 * Returns a match with its phases and the phases of startup as one line
+	 * of JSON.
+	 */
+	static String toJson(Match match, Timings startup) {
+		StringBuilder builder = new StringBuilder("{\"players\":");
+		builder.append(match.getPlayers()).append(",\"args\":").append(quote(match.getArgs()));
+		builder.append(",\"cached\":").append(match.isCached());
+		builder.append(",\"startup\":").append(startup.toJson());
+		builder.append(",\"phases\":").append(match.getTimings().toJson());
+		return builder.append('}').toString();
+	}
+
+	static String quote(List<String> values) {
+		StringBuilder builder = new StringBuilder("[");
+
+		for (String value : values) {
+			if (builder.length() > 1)
+				builder.append(',');
+
+			builder.append(quote(value));
+		}
+
+		return builder.append(']').toString();
+	}
+
+	static String quote(String value) {
+		StringBuilder builder = new StringBuilder("\"");
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if (c == '"' || c == '\\')
+				builder.append('\\').append(c);
+			else if (c < 0x20)
+				builder.append(String.format("\\u%04x", (int)c));
+			else
+				builder.append(c);
+		}
+
+		return builder.append('"').toString();
+	}
+}
@@ -0,0 +1,204 @@
+package uno.cod;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Lets all players of a simultaneous-move game think about their turn at
+ * the same time. Every player gets its own {@link CodunoWorker}, so the
+ * wall-clock time of a turn is about that of the slowest player instead of
+ * the sum of all players, and each player is charged only its own CPU time.
+ *
+ * <pre>
+ * try (TurnBarrier barrier = new TurnBarrier(players)) {
+ *     while (running) {
+ *         List&lt;Callable&lt;Move&gt;&gt; moves = ...; // one per player
+ *         for (TurnBarrier.Result&lt;Move&gt; result : barrier.play(moves, 100))
+ *             ...
+ *     }
+ * }
+ * </pre>
+ *
+ * A barrier is meant to be used by one thread, the one that runs the game.
+ */
+public class TurnBarrier implements AutoCloseable {
+	private final List<CodunoWorker> workers;
+
+	private final List<? extends Solution> players;
+
+	/**
+	 * What one player did in a turn.
+	 */
+	public static final class Result<T> {
+		private final T value;
+
+		private final long time;
+
+		private final Throwable exception;
+
+		private Result(T value, long time, Throwable exception) {
+			this.value = value;
+			this.time = time;
+			this.exception = exception;
+		}
+
+		/**
+		 * @return what the player returned, or <code>null</code> if it
+		 *         failed or ran out of time.
+		 */
+		public T getValue() {
+			return value;
+		}
+
+		/**
+		 * @return the CPU time the player used [ns], <code>0</code> if it
+		 *         ran out of time.
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * @return whether the player was stopped because it exceeded its
+		 *         CPU time (or allocation) budget.
+		 */
+		public boolean isTimeout() {
+			return exception instanceof CodunoTimeoutException;
+		}
+
+		/**
+		 * @return what the player threw, a {@link CodunoTimeoutException}
+		 *         if it ran out of time, or <code>null</code> if it
+		 *         returned normally.
+		 */
+		public Throwable getException() {
+			return exception;
+		}
+	}
+
+	/**
+	 * @param players number of players that move in every turn. Their CPU
+	 *                time is not charged to them, see
+	 *                {@link #TurnBarrier(List)}.
+	 */
+	public TurnBarrier(int players) {
+		this(players, null);
+	}
+
+	/**
+	 * @param players that move in every turn, in the order of the moves.
+	 *                The CPU time of each move is charged to its player.
+	 */
+	public TurnBarrier(List<? extends Solution> players) {
+		this(players.size(), new ArrayList<>(players));
+	}
+
+	private TurnBarrier(int count, List<? extends Solution> players) {
+		if (count < 1)
+			throw new IllegalArgumentException("At least one player is needed");
+
+		List<CodunoWorker> workers = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++)
+			workers.add(new CodunoWorker("turn-" + i));
+
+		this.workers = Collections.unmodifiableList(workers);
+		this.players = players;
+	}
+
+	/**
+	 * Basically the same as {@link #play(List, long, long)} with the
+	 * allocation limit given via <code>--allocation-limit</code>.
+	 */
+	public <T> List<Result<T>> play(List<? extends Callable<T>> moves, long timeout) {
+		return play(moves, timeout, Coduno.getAllocationLimit());
+	}
+
+	/**
+	 * Runs one move per player concurrently and waits for all of them to
+	 * return or run out of time.
+	 *
+	 * @param moves one per player, in the order of players. Usually calls
+	 *              a method of the player's Solution.
+	 * @param timeout maximum CPU-time each move is allowed to run for [ms].
+	 * @param allocation maximum number of bytes each move may allocate, not
+	 *                   limited if not positive.
+	 * @return the results of the moves, in the order of
+	 *         <code>moves</code>.
+	 * @throws IllegalArgumentException if there are not as many moves as
+	 *                                  players.
+	 */
+	public <T> List<Result<T>> play(List<? extends Callable<T>> moves, long timeout, long allocation) {
+		if (moves.size() != workers.size())
+			throw new IllegalArgumentException("Expected " + workers.size() + " moves, got " + moves.size());
+
+		List<Move<T>> pending = new ArrayList<>(moves.size());
+
+		for (int i = 0; i < moves.size(); i++) {
+			Move<T> move = new Move<>(moves.get(i));
+			move.time = workers.get(i).submit(players == null ? null : players.get(i), move, timeout, allocation);
+			pending.add(move);
+		}
+
+		List<Result<T>> results = new ArrayList<>(pending.size());
+
+		for (Move<T> move : pending)
+			results.add(move.await());
+
+		return results;
+	}
+
+	/**
+	 * Lets the threads of all players exit.
+	 */
+	@Override
+	public void close() {
+		for (CodunoWorker worker : workers)
+			worker.close();
+	}
+
+	/**
+	 * A move handed to a worker, remembers what it returned.
+	 */
+	private static final class Move<T> implements Runnable {
+		final Callable<T> callable;
+
+		CompletableFuture<Long> time;
+
+		volatile T value;
+
+		volatile Throwable exception;
+
+		Move(Callable<T> callable) {
+			this.callable = callable;
+		}
+
+		@Override
+		public void run() {
+			try {
+				value = callable.call();
+			}
+			catch (Exception e) {
+				exception = e;
+			}
+		}
+
+		Result<T> await() {
+			try {
+				long cpu = time.get();
+				return new Result<>(exception == null ? value : null, cpu, exception);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return new Result<>(null, 0, e);
+			}
+			catch (ExecutionException e) {
+				return new Result<>(null, 0, e.getCause());
+			}
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package uno.cod;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Supervises the CPU time of all running {@link CodunoThread}s from a single
+ * thread, instead of one waiting thread per call of {@link Coduno#run}.
+ * Threads that execute several tasks (see {@link CodunoWorker}) are watched
+ * per task.
+ *
+ * Once per tick, the CPU time of all watched threads is sampled in one
+ * batched call if the JVM supports it (see
+ * {@link com.sun.management.ThreadMXBean#getThreadCpuTime(long[])}). Threads
+ * that exceeded their timeout are stopped and their result is completed
+ * with a {@link CodunoTimeoutException}. The same is done for threads that
+ * allocated more heap memory than allowed, see
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long[])},
+ * with a {@link CodunoAllocationException}. Threads that finish in time
+ * complete their result themselves.
+ */
+final class Watchdog implements Runnable {
+	private static final Watchdog instance = new Watchdog();
+
+	private final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+	private final Queue<Run> added = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Runs currently watched, only accessed by {@link #thread}.
+	 */
+	private final List<Run> watched = new ArrayList<>();
+
+	private volatile long tick = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private Thread thread;
+
+	private Watchdog() {
+	}
+
+	/**
+	 * Sets the interval between two samples of CPU time.
+	 */
+	static void setTick(long millis) {
+		if (millis <= 0)
+			throw new IllegalArgumentException("Watchdog tick must be positive");
+
+		instance.tick = TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	/**
+	 * A piece of work executed by a thread, that must not use more than
+	 * <code>budget</code> nanoseconds of CPU time on top of what the thread
+	 * used before (<code>base</code>), and not allocate more than
+	 * <code>allocationBudget</code> bytes on top of what the thread
+	 * allocated before (<code>allocationBase</code>).
+	 */
+	private static final class Run {
+		final CodunoThread thread;
+
+		final CompletableFuture<Long> result;
+
+		final long base;
+
+		final long budget;
+
+		final long allocationBase;
+
+		final long allocationBudget;
+
+		Run(CodunoThread thread, CompletableFuture<Long> result, long base, long budget, long allocationBase, long allocationBudget) {
+			this.thread = thread;
+			this.result = result;
+			this.base = base;
+			this.budget = budget;
+			this.allocationBase = allocationBase;
+			this.allocationBudget = allocationBudget;
+		}
+	}
+
+	/**
+	 * Starts watching a thread that was already started.
+	 *
+	 * @return the result of <code>thread</code>, see
+	 *         {@link CodunoThread#getResult()}.
+	 */
+	static CompletableFuture<Long> watch(CodunoThread thread) {
+		return watch(thread, thread.getResult(), 0, thread.getTimeout(), 0, thread.getAllocationLimit());
+	}
+
+	/**
+	 * Starts watching a part of the execution of <code>thread</code>, which
+	 * is over as soon as <code>result</code> is completed.
+	 *
+	 * @param base CPU time <code>thread</code> used before [ns].
+	 * @param budget CPU time the run may use on top of <code>base</code>
+	 *               [ns], not limited if not positive.
+	 * @param allocationBase bytes <code>thread</code> allocated before.
+	 * @param allocationBudget bytes the run may allocate on top of
+	 *                         <code>allocationBase</code>, not limited if
+	 *                         not positive.
+	 * @return <code>result</code>
+	 */
+	static CompletableFuture<Long> watch(CodunoThread thread, CompletableFuture<Long> result, long base, long budget, long allocationBase, long allocationBudget) {
+		instance.start();
+		instance.added.add(new Run(thread, result, base, budget, allocationBase, allocationBudget));
+		LockSupport.unpark(instance.thread);
+		return result;
+	}
+
+	private synchronized void start() {
+		if (thread != null)
+			return;
+
+		thread = new Thread(this, "coduno-watchdog");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+	}
+
+	@Override
+	public void run() {
+		// do not keep the match that happened to start the watchdog
+		Match.detach();
+
+		while (true) {
+			Run item;
+
+			while ((item = added.poll()) != null)
+				watched.add(item);
+
+			if (watched.isEmpty()) {
+				LockSupport.park(this);
+				continue;
+			}
+
+			try {
+				sample();
+			}
+			catch (Throwable e) {
+				// the only watchdog must survive anything, or every
+				// further run waits for a result forever
+				Logger.getGlobal().log(Level.WARNING, "Watchdog failed to sample " + watched.size() + " runs", e);
+			}
+
+			LockSupport.parkNanos(this, tick);
+		}
+	}
+
+	private void sample() {
+		long[] ids = new long[watched.size()];
+		boolean allocation = false;
+
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = watched.get(i).thread.getId();
+			allocation |= watched.get(i).allocationBudget > 0;
+		}
+
+		long[] times = getThreadCpuTime(ids);
+		long[] allocations = allocation ? getThreadAllocatedBytes(ids) : null;
+		Iterator<Run> iterator = watched.iterator();
+
+		for (int i = 0; iterator.hasNext(); i++) {
+			Run item = iterator.next();
+
+			if (item.result.isDone() || !item.thread.isAlive()) {
+				iterator.remove();
+				continue;
+			}
+
+			if (item.budget > 0 && times[i] - item.base > item.budget) {
+				item.thread.expire(item.result, new CodunoTimeoutException("Thread " + item.thread.getName() + " ran " + (times[i] - item.base) + "ns CPU-time."));
+				iterator.remove();
+			}
+			else if (item.allocationBudget > 0 && allocations != null && allocations[i] - item.allocationBase > item.allocationBudget) {
+				item.thread.expire(item.result, new CodunoAllocationException("Thread " + item.thread.getName() + " allocated " + (allocations[i] - item.allocationBase) + " bytes."));
+				iterator.remove();
+			}
+			else if (item.budget > 0 && item.thread.getCurrentResult() == item.result) {
+				// not for a task that is already over, the thread may
+				// have started the next one
+				item.thread.setRemainingTime(item.budget - (times[i] - item.base));
+			}
+		}
+	}
+
+	/**
+	 * @return bytes allocated by each thread, or <code>null</code> if the
+	 *         JVM does not support measuring it.
+	 */
+	private long[] getThreadAllocatedBytes(long[] ids) {
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return null;
+
+		try {
+			return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(ids);
+		}
+		catch (UnsupportedOperationException e) {
+			return null;
+		}
+	}
+
+	private long[] getThreadCpuTime(long[] ids) {
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean)bean).getThreadCpuTime(ids);
+
+		long[] times = new long[ids.length];
+
+		for (int i = 0; i < ids.length; i++)
+			times[i] = bean.getThreadCpuTime(ids[i]);
+
+		return times;
+	}
+}
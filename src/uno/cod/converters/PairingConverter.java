@@ -0,0 +1,25 @@
+package uno.cod.converters;
+
+import com.beust.jcommander.IStringConverter;
+import uno.cod.tournament.Pairing;
+import uno.cod.tournament.RoundRobin;
+import uno.cod.tournament.Swiss;
+
+public class PairingConverter implements IStringConverter<Pairing> {
+	@Override
+	public Pairing convert(String value) {
+		if (value.equals("round-robin"))
+			return new RoundRobin();
+
+		if (value.equals("swiss"))
+			return new Swiss(0);
+
+		try {
+			if (value.startsWith("swiss:"))
+				return new Swiss(Integer.parseInt(value.substring(6)));
+		}
+		catch (NumberFormatException e) {}
+
+		return null;
+	}
+}
@@ -0,0 +1,91 @@
+package uno.cod.record;
+
+/**
+ * One entry of a record, see {@link Recorder}.
+ */
+public class Event {
+	public enum Type {
+		/**
+		 * Start of a turn, see {@link Recorder#turn(int)}.
+		 */
+		TURN,
+
+		/**
+		 * Something a player did, see {@link Recorder#action(int, String)}.
+		 */
+		ACTION,
+
+		/**
+		 * A change of the state of the game, see
+		 * {@link Recorder#delta(String, long)} and
+		 * {@link Recorder#delta(String, String)}.
+		 */
+		DELTA
+	}
+
+	private final Type type;
+
+	private final int turn;
+
+	private final int player;
+
+	private final String key;
+
+	private final Object value;
+
+	Event(Type type, int turn, int player, String key, Object value) {
+		this.type = type;
+		this.turn = turn;
+		this.player = player;
+		this.key = key;
+		this.value = value;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return the turn this event happened in, <code>0</code> for events
+	 *         before the first turn.
+	 */
+	public int getTurn() {
+		return turn;
+	}
+
+	/**
+	 * @return the index of the player that acted, <code>-1</code> if this
+	 *         is no {@link Type#ACTION}.
+	 */
+	public int getPlayer() {
+		return player;
+	}
+
+	/**
+	 * @return the key of a {@link Type#DELTA}, <code>null</code> otherwise.
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return the action of a {@link Type#ACTION}, the new value (a
+	 *         {@link Long} or {@link String}) of a {@link Type#DELTA}, or
+	 *         <code>null</code> for a {@link Type#TURN}.
+	 */
+	public Object getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		switch (type) {
+			case TURN:
+				return "turn " + turn;
+			case ACTION:
+				return "action " + player + " " + value;
+			default:
+				return "delta " + key + " " + value;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package uno.cod.record;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads a record written by {@link Recorder} one {@link Event} at a time,
+ * so records of any length can be processed in constant memory (apart from
+ * the distinct texts of the record).
+ */
+public class RecordReader implements Closeable {
+	private final DataInputStream in;
+
+	private final List<String> strings = new ArrayList<>();
+
+	private int turn = 0;
+
+	private boolean done = false;
+
+	/**
+	 * @throws IOException if <code>in</code> does not start with a record.
+	 */
+	public RecordReader(InputStream in) throws IOException {
+		DataInputStream header = new DataInputStream(in);
+
+		if (header.readInt() != Recorder.MAGIC)
+			throw new IOException("Not a record");
+
+		this.in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(in), 1 << 13));
+	}
+
+	/**
+	 * Checks whether <code>in</code> starts with a record. Reads four bytes
+	 * of <code>in</code>.
+	 */
+	public static boolean isRecord(InputStream in) throws IOException {
+		try {
+			return new DataInputStream(in).readInt() == Recorder.MAGIC;
+		}
+		catch (EOFException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return the next event, or <code>null</code> at the end of the record.
+	 * @throws EOFException if the record ends without being closed, for
+	 *                      example because the game was stopped.
+	 */
+	public Event next() throws IOException {
+		if (done)
+			return null;
+
+		int tag = in.readUnsignedByte();
+
+		switch (tag) {
+			case Recorder.END:
+				done = true;
+				return null;
+			case Recorder.TURN:
+				turn = (int)readVarLong();
+				return new Event(Event.Type.TURN, turn, -1, null, null);
+			case Recorder.ACTION:
+				int player = (int)readVarLong();
+				return new Event(Event.Type.ACTION, turn, player, null, readString());
+			case Recorder.NUMBER:
+				String key = readString();
+				long value = readVarLong();
+				return new Event(Event.Type.DELTA, turn, -1, key, (value >>> 1) ^ -(value & 1));
+			case Recorder.TEXT:
+				key = readString();
+				return new Event(Event.Type.DELTA, turn, -1, key, readString());
+			default:
+				throw new IOException("Unknown event " + tag);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private String readString() throws IOException {
+		int index = (int)readVarLong();
+
+		if (index < strings.size())
+			return strings.get(index);
+
+		if (index > strings.size())
+			throw new IOException("Unknown string " + index);
+
+		long length = readVarLong();
+
+		if (length < 0 || length > Integer.MAX_VALUE)
+			throw new IOException("Invalid length " + length + " of string " + index);
+
+		byte[] bytes = new byte[(int)length];
+		in.readFully(bytes);
+		String value = new String(bytes, StandardCharsets.UTF_8);
+		strings.add(value);
+		return value;
+	}
+
+	private long readVarLong() throws IOException {
+		long value = 0;
+
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long)(b & 0x7f) << shift;
+
+			if ((b & 0x80) == 0)
+				return value;
+		}
+
+		throw new IOException("Malformed number");
+	}
+}
@@ -0,0 +1,144 @@
+package uno.cod.record;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes the course of a simulation as a compact binary record, see
+ * {@link uno.cod.RecordingGame}. A record is a sequence of events: the
+ * start of a turn, an action of a player and a change of the state of the
+ * game (a delta, either a number or a text). Records are read by
+ * {@link RecordReader}.
+ *
+ * Events are compressed while they are written. Numbers are written as
+ * variable-length integers, and every distinct text is written only once
+ * and referred to by its index afterwards, so repeating keys and actions
+ * cost one or two bytes each.
+ *
+ * A Recorder must not be used by more than one thread at a time.
+ */
+public class Recorder implements Closeable, Flushable {
+	/**
+	 * Written uncompressed at the start of every record ("COD1").
+	 */
+	static final int MAGIC = 0x434f4431;
+
+	static final int END = 0, TURN = 1, ACTION = 2, NUMBER = 3, TEXT = 4;
+
+	private final DataOutputStream out;
+
+	/**
+	 * Holds native memory until {@link #close()} ends it.
+	 */
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+	private final Map<String, Integer> strings = new HashMap<>();
+
+	private boolean closed = false;
+
+	public Recorder(OutputStream out) throws IOException {
+		new DataOutputStream(out).writeInt(MAGIC);
+		this.out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(out, deflater, 1 << 13, true), 1 << 13));
+	}
+
+	/**
+	 * Marks the start of a turn. Following events belong to this turn.
+	 */
+	public void turn(int turn) throws IOException {
+		out.writeByte(TURN);
+		writeVarLong(turn);
+	}
+
+	/**
+	 * Records what a player did.
+	 *
+	 * @param player index of the player, as passed to
+	 *               {@link uno.cod.Game#load}.
+	 */
+	public void action(int player, String action) throws IOException {
+		out.writeByte(ACTION);
+		writeVarLong(player);
+		writeString(action);
+	}
+
+	/**
+	 * Records that a numeric part of the state of the game changed.
+	 */
+	public void delta(String key, long value) throws IOException {
+		out.writeByte(NUMBER);
+		writeString(key);
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+
+	/**
+	 * Records that a part of the state of the game changed.
+	 */
+	public void delta(String key, String value) throws IOException {
+		out.writeByte(TEXT);
+		writeString(key);
+		writeString(value);
+	}
+
+	/**
+	 * Writes all events recorded so far, so that they can be read before
+	 * the record is closed. Costs compression ratio if called often.
+	 */
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Marks the end of the record and closes the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+
+		closed = true;
+
+		try {
+			out.writeByte(END);
+			out.close();
+		}
+		finally {
+			deflater.end();
+		}
+	}
+
+	private void writeString(String value) throws IOException {
+		Integer index = strings.get(value);
+
+		if (index != null) {
+			writeVarLong(index);
+			return;
+		}
+
+		// the next free index announces a new string, followed by its
+		// length in bytes, as writeUTF is limited to 64 KiB
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(strings.size());
+		writeVarLong(bytes.length);
+		out.write(bytes);
+		strings.put(value, strings.size());
+	}
+
+	private void writeVarLong(long value) throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			out.writeByte((int)(value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+
+		out.writeByte((int)value);
+	}
+}
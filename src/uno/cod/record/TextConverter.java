@@ -0,0 +1,62 @@
+package uno.cod.record;
+
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Converts records to text, one line per event (see
+ * {@link Event#toString()}):
+ *
+ * <pre>
+ * turn &lt;turn&gt;
+ * action &lt;player&gt; &lt;action&gt;
+ * delta &lt;key&gt; &lt;value&gt;
+ * </pre>
+ */
+public class TextConverter {
+	private TextConverter() {
+	}
+
+	/**
+	 * Writes all events of <code>reader</code> to <code>out</code>. Records
+	 * that were not closed are converted up to where they end.
+	 */
+	public static void convert(RecordReader reader, Writer out) throws IOException {
+		try {
+			for (Event event = reader.next(); event != null; event = reader.next()) {
+				out.write(event.toString());
+				out.write('\n');
+			}
+		}
+		catch (EOFException e) {
+			// game was stopped before the record was closed
+		}
+
+		out.flush();
+	}
+
+	/**
+	 * Usage: <code>java uno.cod.record.TextConverter &lt;record&gt; [&lt;text&gt;]</code>,
+	 * writes to <code>System.out</code> if no output file is given.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: java uno.cod.record.TextConverter <record> [<text>]");
+			System.exit(1);
+		}
+
+		try (InputStream in = new FileInputStream(args[0]); RecordReader reader = new RecordReader(in)) {
+			Writer out = new BufferedWriter(new OutputStreamWriter(args.length > 1 ? new FileOutputStream(args[1]) : System.out, "UTF-8"));
+			convert(reader, out);
+
+			if (args.length > 1)
+				out.close();
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package uno.cod.tournament;
+
+import java.util.List;
+
+/**
+ * Strategy to decide which players meet in which round of a
+ * {@link Tournament}.
+ */
+public interface Pairing {
+	/**
+	 * Computes the matchups of a round. Matchups of the same round are
+	 * independent of each other and may be simulated concurrently.
+	 *
+	 * @param round number of the round, starting at 0.
+	 * @param players all participants of the tournament.
+	 * @param size number of players per match, as required by the game.
+	 * @param standings results of all previous rounds.
+	 * @return the player IDs of every match in this round, or an empty
+	 *         list if the tournament is over.
+	 */
+	List<List<Integer>> pair(int round, List<Integer> players, int size, Standings standings);
+}
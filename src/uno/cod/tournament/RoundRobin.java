@@ -0,0 +1,39 @@
+package uno.cod.tournament;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Every combination of players meets exactly once, all in one round.
+ */
+public class RoundRobin implements Pairing {
+	@Override
+	public List<List<Integer>> pair(int round, List<Integer> players, int size, Standings standings) {
+		List<List<Integer>> result = new ArrayList<>();
+
+		if (round > 0)
+			return result;
+
+		combine(players, size, 0, new ArrayList<Integer>(size), result);
+		return result;
+	}
+
+	private static void combine(List<Integer> players, int size, int offset, List<Integer> prefix, List<List<Integer>> result) {
+		if (prefix.size() == size) {
+			result.add(Collections.unmodifiableList(new ArrayList<>(prefix)));
+			return;
+		}
+
+		for (int i = offset; i <= players.size() - (size - prefix.size()); i++) {
+			prefix.add(players.get(i));
+			combine(players, size, i + 1, prefix, result);
+			prefix.remove(prefix.size() - 1);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "round-robin";
+	}
+}
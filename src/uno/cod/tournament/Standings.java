@@ -0,0 +1,135 @@
+package uno.cod.tournament;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the results of a {@link Tournament}. A win is worth two points,
+ * a tie one point. Matches that failed (for example because a Solution
+ * could not be loaded) are counted as errors and are worth nothing.
+ *
+ * All methods are safe to be called from multiple threads.
+ */
+public class Standings {
+	private final Map<Integer, int[]> scores = new HashMap<>();
+
+	private final Map<Integer, Set<Integer>> opponents = new HashMap<>();
+
+	private static final int WINS = 0, TIES = 1, LOSSES = 2, ERRORS = 3;
+
+	/**
+	 * Records the outcome of a match.
+	 *
+	 * @param winner the ID of the winner as returned by
+	 *               {@link uno.cod.Match#call()}, or <code>null</code> in
+	 *               case of a tie.
+	 */
+	public synchronized void record(List<Integer> players, String winner) {
+		meet(players);
+
+		for (Integer player : players) {
+			if (winner == null)
+				get(player)[TIES]++;
+			else if (winner.equals(player.toString()))
+				get(player)[WINS]++;
+			else
+				get(player)[LOSSES]++;
+		}
+	}
+
+	/**
+	 * Records a match that could not be completed.
+	 */
+	public synchronized void fail(List<Integer> players) {
+		meet(players);
+
+		for (Integer player : players)
+			get(player)[ERRORS]++;
+	}
+
+	public synchronized int getPoints(Integer player) {
+		int[] score = get(player);
+		return 2 * score[WINS] + score[TIES];
+	}
+
+	/**
+	 * Checks whether <code>player</code> already met any of
+	 * <code>players</code>.
+	 */
+	public synchronized boolean met(List<Integer> players, Integer player) {
+		Set<Integer> set = opponents.get(player);
+
+		if (set == null)
+			return false;
+
+		for (Integer item : players)
+			if (set.contains(item))
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Sorts <code>players</code> by points, best first. Players with equal
+	 * points keep their relative order.
+	 */
+	public synchronized List<Integer> rank(List<Integer> players) {
+		List<Integer> result = new ArrayList<>(players);
+
+		Collections.sort(result, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Integer.compare(getPoints(b), getPoints(a));
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Prints one line per player, best first, with the columns rank, player,
+	 * points, wins, ties, losses and errors separated by tabs.
+	 */
+	public synchronized void print(List<Integer> players, PrintWriter out) {
+		int rank = 0;
+
+		out.println("#\tplayer\tpoints\twins\tties\tlosses\terrors");
+
+		for (Integer player : rank(players)) {
+			int[] score = get(player);
+			out.println(++rank + "\t" + player + "\t" + getPoints(player) + "\t" + score[WINS] + "\t" + score[TIES] + "\t" + score[LOSSES] + "\t" + score[ERRORS]);
+		}
+		out.flush();
+	}
+
+	private int[] get(Integer player) {
+		int[] score = scores.get(player);
+
+		if (score == null) {
+			score = new int[4];
+			scores.put(player, score);
+		}
+		return score;
+	}
+
+	private void meet(List<Integer> players) {
+		for (Integer player : players) {
+			Set<Integer> set = opponents.get(player);
+
+			if (set == null) {
+				set = new HashSet<>();
+				opponents.put(player, set);
+			}
+
+			for (Integer opponent : players)
+				if (!opponent.equals(player))
+					set.add(opponent);
+		}
+	}
+}
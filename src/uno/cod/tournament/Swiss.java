@@ -0,0 +1,60 @@
+package uno.cod.tournament;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Players with similar scores meet each other for a fixed number of
+ * rounds, avoiding rematches where possible. If the number of players is
+ * not divisible by the match size, the lowest ranked remaining players sit
+ * out the round.
+ */
+public class Swiss implements Pairing {
+	private final int rounds;
+
+	/**
+	 * @param rounds number of rounds to play. If not positive, enough
+	 *               rounds to determine a single winner are played
+	 *               (<code>ceil(log2(players))</code>).
+	 */
+	public Swiss(int rounds) {
+		this.rounds = rounds;
+	}
+
+	@Override
+	public List<List<Integer>> pair(int round, List<Integer> players, int size, Standings standings) {
+		List<List<Integer>> result = new ArrayList<>();
+		int limit = rounds > 0 ? rounds : 32 - Integer.numberOfLeadingZeros(Math.max(players.size() - 1, 1));
+
+		if (round >= limit)
+			return result;
+
+		LinkedList<Integer> ranking = new LinkedList<>(standings.rank(players));
+
+		while (ranking.size() >= size) {
+			List<Integer> match = new ArrayList<>(size);
+			match.add(ranking.removeFirst());
+
+			// prefer the best ranked opponents nobody in this match met yet
+			for (int i = 0; match.size() < size && i < ranking.size(); ) {
+				if (standings.met(match, ranking.get(i)))
+					i++;
+				else
+					match.add(ranking.remove(i));
+			}
+
+			while (match.size() < size)
+				match.add(ranking.removeFirst());
+
+			result.add(Collections.unmodifiableList(match));
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "swiss" + (rounds > 0 ? ":" + rounds : "");
+	}
+}
@@ -0,0 +1,105 @@
+package uno.cod.tournament;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import uno.cod.Match;
+
+/**
+ * Plays a series of rounds between a list of players. The matches of each
+ * round are independent of each other and are simulated concurrently on a
+ * bounded pool of threads, each of them being an own {@link Match} with
+ * its own Game instance and ClassLoaders.
+ *
+ * @author Lorenz Leutgeb
+ */
+public class Tournament implements Callable<Standings> {
+	private final List<Integer> players;
+
+	private final Pairing pairing;
+
+	private final int size;
+
+	private final int parallelism;
+
+	private final List<String> args;
+
+	/**
+	 * @param players IDs of all participants.
+	 * @param pairing decides who meets whom in every round.
+	 * @param size number of players per match, see
+	 *             {@link uno.cod.Game#getPlayerCount()}.
+	 * @param args parameters passed to every match.
+	 * @param parallelism maximum number of matches running concurrently.
+	 */
+	public Tournament(List<Integer> players, Pairing pairing, int size, List<String> args, int parallelism) {
+		if (size < 1 || players.size() < size)
+			throw new IllegalArgumentException("Not enough players for matches of " + size);
+
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be positive");
+
+		this.players = Collections.unmodifiableList(new ArrayList<>(players));
+		this.pairing = pairing;
+		this.size = size;
+		this.args = args;
+		this.parallelism = parallelism;
+	}
+
+	public List<Integer> getPlayers() {
+		return players;
+	}
+
+	/**
+	 * Plays all rounds and returns the final standings.
+	 */
+	@Override
+	public Standings call() throws InterruptedException {
+		final Standings standings = new Standings();
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+		try {
+			List<List<Integer>> round;
+
+			for (int i = 0; !(round = pairing.pair(i, players, size, standings)).isEmpty(); i++) {
+				Logger.getGlobal().info("Round " + i + " of " + pairing + ": " + round);
+
+				List<Future<?>> pending = new ArrayList<>(round.size());
+
+				for (final List<Integer> matchup : round) {
+					pending.add(executor.submit(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								standings.record(matchup, new Match(matchup, args).call());
+							}
+							catch (Exception e) {
+								Logger.getGlobal().warning("Match " + matchup + " failed: " + e);
+								standings.fail(matchup);
+							}
+						}
+					}));
+				}
+
+				for (Future<?> future : pending) {
+					try {
+						future.get();
+					}
+					catch (ExecutionException e) {
+						throw new IllegalStateException(e.getCause());
+					}
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return standings;
+	}
+}
@@ -0,0 +1,12 @@
+package uno.cod.validators;
+
+import com.beust.jcommander.IParameterValidator;
+import com.beust.jcommander.ParameterException;
+import uno.cod.converters.PairingConverter;
+
+public class PairingValidator implements IParameterValidator {
+	public void validate(String name, String value) throws ParameterException {
+		if (new PairingConverter().convert(value) == null)
+			throw new ParameterException("Parameter " + name + " should be one of [ round-robin, swiss, swiss:<rounds> ]");
+	}
+}